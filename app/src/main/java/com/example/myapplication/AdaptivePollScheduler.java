@@ -0,0 +1,228 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 自适应轮询调度
+ * 有活动（收到新消息、应用在前台、收到NEW_MESSAGE广播）时使用最短间隔；
+ * 空闲时每轮间隔翻倍，上限随设备状态放宽：亮屏为maxIntervalMs，熄屏放大4倍，doze放大10倍。
+ * 任务在SYNC通道执行，执行结束后才安排下一次，不会重叠
+ */
+public class AdaptivePollScheduler {
+
+    private static final String TAG = "AdaptivePollScheduler";
+
+    private static final int SCREEN_OFF_FACTOR = 4;
+    private static final int DOZE_FACTOR = 10;
+
+    /**
+     * 一轮轮询
+     */
+    public interface PollTask {
+        /**
+         * @return 本轮是否发现了新的活动（例如新消息），发现时间隔重置为最短
+         */
+        boolean poll();
+    }
+
+    // 正在运行的调度器，用于前台切换和亮屏时统一重置
+    private static final CopyOnWriteArrayList<AdaptivePollScheduler> active = new CopyOnWriteArrayList<>();
+    // 按名称记录所有调度器（包括已停止的），用于统计输出
+    private static final java.util.concurrent.ConcurrentHashMap<String, AdaptivePollScheduler> registry =
+            new java.util.concurrent.ConcurrentHashMap<>();
+    private static volatile boolean appForeground = false;
+
+    private final String name;
+    private final Context context;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final PollTask task;
+    private final AppExecutors executors = AppExecutors.getInstance();
+
+    private long currentIntervalMs;
+    private ScheduledFuture<?> pending;
+    private boolean running = false;
+    // start/stop时递增；执行中的一轮只有在代数仍一致时才安排下一次，
+    // 避免stop后立即start时旧的一轮和新启动的各自形成一条调度链
+    private long generation = 0;
+    // 执行中收到的reset：此时pending已触发无法重排，由runOnce结束时按有活动处理
+    private boolean resetRequested = false;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong resetCount = new AtomicLong();
+
+    public AdaptivePollScheduler(Context context, String name, long minIntervalMs, long maxIntervalMs, PollTask task) {
+        this.context = context.getApplicationContext();
+        this.name = name;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = Math.max(minIntervalMs, maxIntervalMs);
+        this.task = task;
+        this.currentIntervalMs = minIntervalMs;
+        registry.put(name, this);
+    }
+
+    /**
+     * 启动调度，第一次在initialDelayMs后执行
+     */
+    public synchronized void start(long initialDelayMs) {
+        if (running) {
+            return;
+        }
+        running = true;
+        generation++;
+        resetRequested = false;
+        currentIntervalMs = minIntervalMs;
+        active.addIfAbsent(this);
+        scheduleNext(initialDelayMs);
+        Log.d(TAG, name + " 已启动，最短间隔 " + minIntervalMs + "ms");
+    }
+
+    public synchronized void stop() {
+        running = false;
+        generation++;
+        active.remove(this);
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        Log.d(TAG, name + " 已停止");
+    }
+
+    /**
+     * 有新活动：间隔恢复为最短，并在最短间隔内执行下一轮
+     */
+    public synchronized void reset() {
+        if (!running) {
+            return;
+        }
+        resetCount.incrementAndGet();
+        currentIntervalMs = minIntervalMs;
+        resetRequested = true;
+        if (pending != null && pending.getDelay(TimeUnit.MILLISECONDS) > minIntervalMs) {
+            pending.cancel(false);
+            scheduleNext(minIntervalMs);
+        }
+    }
+
+    /**
+     * 应用前台状态变化（Activity onResume/onPause调用）；进入前台时所有调度器立即恢复最短间隔
+     */
+    public static void setAppForeground(boolean foreground) {
+        appForeground = foreground;
+        if (foreground) {
+            for (AdaptivePollScheduler scheduler : active) {
+                scheduler.reset();
+            }
+        }
+    }
+
+    /**
+     * 设备唤醒（亮屏）时调用，恢复所有调度器的最短间隔
+     */
+    public static void onDeviceInteractive() {
+        for (AdaptivePollScheduler scheduler : active) {
+            scheduler.reset();
+        }
+    }
+
+    private void scheduleNext(long delayMs) {
+        long scheduledGeneration = generation;
+        pending = executors.scheduler().schedule(() -> executors.sync().execute(() -> runOnce(scheduledGeneration)),
+                delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void runOnce(long scheduledGeneration) {
+        synchronized (this) {
+            if (!running || generation != scheduledGeneration) {
+                return;
+            }
+            // 只有本轮执行期间收到的reset才需要在结束时补偿
+            resetRequested = false;
+        }
+
+        boolean hadActivity = false;
+        requestCount.incrementAndGet();
+        try {
+            hadActivity = task.poll();
+        } catch (Exception e) {
+            Log.e(TAG, name + " 执行轮询异常", e);
+        }
+
+        synchronized (this) {
+            if (!running || generation != scheduledGeneration) {
+                return;
+            }
+            long previous = currentIntervalMs;
+            if (resetRequested) {
+                hadActivity = true;
+                resetRequested = false;
+            }
+            if (hadActivity) {
+                currentIntervalMs = minIntervalMs;
+            } else {
+                currentIntervalMs = Math.min(currentIntervalMs * 2, currentCapMs());
+            }
+            if (currentIntervalMs != previous) {
+                Log.d(TAG, name + " 轮询间隔调整为 " + currentIntervalMs + "ms");
+            }
+            scheduleNext(currentIntervalMs);
+        }
+    }
+
+    /**
+     * 当前设备状态下允许的最长间隔
+     */
+    private long currentCapMs() {
+        if (appForeground) {
+            return minIntervalMs;
+        }
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            if (powerManager.isDeviceIdleMode()) {
+                return maxIntervalMs * DOZE_FACTOR;
+            }
+            if (!powerManager.isInteractive()) {
+                return maxIntervalMs * SCREEN_OFF_FACTOR;
+            }
+        }
+        return maxIntervalMs;
+    }
+
+    public synchronized JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("name", name);
+            stats.put("running", running);
+            stats.put("intervalMs", currentIntervalMs);
+            stats.put("capMs", currentCapMs());
+            stats.put("requests", requestCount.get());
+            stats.put("resets", resetCount.get());
+            stats.put("appForeground", appForeground);
+        } catch (JSONException e) {
+            Log.e(TAG, "生成轮询统计失败", e);
+        }
+        return stats;
+    }
+
+    /**
+     * 所有调度器的有效间隔和请求次数
+     */
+    public static JSONArray getAllStats() {
+        JSONArray stats = new JSONArray();
+        for (AdaptivePollScheduler scheduler : registry.values()) {
+            stats.put(scheduler.getStats());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.myapplication;
+
+import android.os.Process;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全应用共享的线程池
+ * 按用途划分为三条有界通道，互不抢占：
+ * INTERACTIVE - WebView桥接调用等用户正在等待结果的请求
+ * SYNC        - 消息轮询、提醒检查、每日待办生成等周期性同步
+ * HOUSEKEEPING - 清理等可延后的后台维护
+ */
+public class AppExecutors {
+
+    private static final String TAG = "AppExecutors";
+
+    public enum Lane {
+        INTERACTIVE(3, 64, Process.THREAD_PRIORITY_DEFAULT),
+        SYNC(2, 32, Process.THREAD_PRIORITY_BACKGROUND),
+        HOUSEKEEPING(1, 16, Process.THREAD_PRIORITY_LOWEST);
+
+        final int threads;
+        final int queueCapacity;
+        final int threadPriority;
+
+        Lane(int threads, int queueCapacity, int threadPriority) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    // 通道队列已满时重新投递的延迟
+    private static final long OVERFLOW_RETRY_DELAY_MS = 500;
+
+    private static volatile AppExecutors instance;
+
+    private final java.util.EnumMap<Lane, ThreadPoolExecutor> lanes = new java.util.EnumMap<>(Lane.class);
+    private final java.util.EnumMap<Lane, AtomicLong> rejectedCounts = new java.util.EnumMap<>(Lane.class);
+    private final ScheduledExecutorService scheduler;
+
+    public static AppExecutors getInstance() {
+        if (instance == null) {
+            synchronized (AppExecutors.class) {
+                if (instance == null) {
+                    instance = new AppExecutors();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private AppExecutors() {
+        // 只负责定时投递，实际工作交给各通道执行
+        scheduler = Executors.newSingleThreadScheduledExecutor(newThreadFactory("scheduler", Process.THREAD_PRIORITY_BACKGROUND));
+
+        for (Lane lane : Lane.values()) {
+            AtomicLong rejected = new AtomicLong();
+            rejectedCounts.put(lane, rejected);
+
+            // 队列满时不在提交方线程执行（可能是主线程或scheduler线程），记数后延迟重新投递到本通道；
+            // 线程池已关闭时直接拒绝。同名任务的重复触发由SingleFlightRunner合并，不会因此堆积
+            RejectedExecutionHandler overflow = (task, executor) -> {
+                rejected.incrementAndGet();
+                if (executor.isShutdown() || scheduler.isShutdown()) {
+                    Log.w(TAG, lane + " 通道已关闭，丢弃任务");
+                    throw new RejectedExecutionException(lane + " lane is shut down");
+                }
+                Log.w(TAG, lane + " 通道队列已满，" + OVERFLOW_RETRY_DELAY_MS + "ms后重新投递");
+                scheduler.schedule(() -> executor.execute(task), OVERFLOW_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+            };
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    lane.threads, lane.threads,
+                    30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(lane.queueCapacity),
+                    newThreadFactory(lane.name().toLowerCase(), lane.threadPriority),
+                    overflow);
+            executor.allowCoreThreadTimeOut(true);
+            lanes.put(lane, executor);
+        }
+    }
+
+    public ThreadPoolExecutor interactive() {
+        return lanes.get(Lane.INTERACTIVE);
+    }
+
+    public ThreadPoolExecutor sync() {
+        return lanes.get(Lane.SYNC);
+    }
+
+    public ThreadPoolExecutor housekeeping() {
+        return lanes.get(Lane.HOUSEKEEPING);
+    }
+
+    public ThreadPoolExecutor lane(Lane lane) {
+        return lanes.get(lane);
+    }
+
+    /**
+     * 定时投递器（仅用于延迟后把任务转交到某个通道）
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 各通道的队列深度、活跃线程数、完成数和溢出次数
+     */
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            for (Lane lane : Lane.values()) {
+                ThreadPoolExecutor executor = lanes.get(lane);
+                JSONObject laneStats = new JSONObject();
+                laneStats.put("queued", executor.getQueue().size());
+                laneStats.put("active", executor.getActiveCount());
+                laneStats.put("poolSize", executor.getPoolSize());
+                laneStats.put("completed", executor.getCompletedTaskCount());
+                laneStats.put("rejected", rejectedCounts.get(lane).get());
+                stats.put(lane.name().toLowerCase(), laneStats);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "生成线程池统计失败", e);
+        }
+        return stats;
+    }
+
+    private static ThreadFactory newThreadFactory(String name, int threadPriority) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(threadPriority);
+                runnable.run();
+            }, "app-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 应用配置快照
+ * app_prefs中的配置读入一个不可变对象并常驻内存，热点路径直接读字段；
+ * 配置保存或SharedPreferences变化时整体替换快照并通知订阅者
+ */
+public final class AppSettings {
+
+    private static final String TAG = "AppSettings";
+
+    public static final String PREFS_NAME = "app_prefs";
+    public static final String DEFAULT_DAILY_TODO_TEMPLATE = "上班打卡|high|work|09:50\n下班打卡|high|work|19:00";
+
+    /**
+     * 配置变化监听
+     */
+    public interface Listener {
+        void onSettingsChanged(AppSettings oldSettings, AppSettings newSettings);
+    }
+
+    private static final AtomicReference<AppSettings> current = new AtomicReference<>();
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    // SharedPreferences只持有监听器的弱引用，这里保存强引用防止被回收
+    private static SharedPreferences.OnSharedPreferenceChangeListener prefsListener;
+
+    public final String supabaseUrl;
+    public final String supabaseAnonKey;
+    public final String supabaseUserId;
+    public final String currentUserId;          // 未设置时为null
+    public final String morningNotifyTime;
+    public final String eveningNotifyTime;
+    public final boolean dailyTodoEnabled;
+    public final boolean dailyTodoSkipHolidays;
+    public final String dailyTodoTemplate;      // 未设置时为null
+    public final String dailyTodoLastAddedDate;
+
+    private AppSettings(SharedPreferences prefs) {
+        supabaseUrl = prefs.getString("supabase_url", "");
+        supabaseAnonKey = prefs.getString("supabase_anon_key", "");
+        supabaseUserId = prefs.getString("supabase_user_id", "");
+        currentUserId = prefs.getString("current_user_id", null);
+        morningNotifyTime = prefs.getString("morning_notify_time", "09:00");
+        eveningNotifyTime = prefs.getString("evening_notify_time", "18:00");
+        dailyTodoEnabled = prefs.getBoolean("daily_todo_enabled", true);
+        dailyTodoSkipHolidays = prefs.getBoolean("daily_todo_skip_holidays", true);
+        dailyTodoTemplate = prefs.getString("daily_todo_template", null);
+        dailyTodoLastAddedDate = prefs.getString("daily_todo_last_added_date", "");
+    }
+
+    /**
+     * 获取当前配置快照（首次调用时从SharedPreferences加载并开始监听变化）
+     */
+    public static AppSettings get(Context context) {
+        AppSettings settings = current.get();
+        if (settings != null) {
+            return settings;
+        }
+        synchronized (AppSettings.class) {
+            if (current.get() == null) {
+                SharedPreferences prefs = context.getApplicationContext()
+                        .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                current.set(new AppSettings(prefs));
+                prefsListener = (sharedPreferences, key) -> reload(sharedPreferences);
+                prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+            }
+            return current.get();
+        }
+    }
+
+    /**
+     * 重新加载配置（保存配置后调用，使新值立即对所有线程可见）
+     */
+    public static AppSettings reload(Context context) {
+        get(context);
+        return reload(context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    private static AppSettings reload(SharedPreferences prefs) {
+        AppSettings newSettings = new AppSettings(prefs);
+        AppSettings oldSettings = current.getAndSet(newSettings);
+        if (!newSettings.equals(oldSettings)) {
+            for (Listener listener : listeners) {
+                try {
+                    listener.onSettingsChanged(oldSettings, newSettings);
+                } catch (Exception e) {
+                    Log.e(TAG, "通知配置变化失败", e);
+                }
+            }
+        }
+        return newSettings;
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Supabase连接配置是否完整（URL、Key、用户ID都已设置）
+     */
+    public boolean hasSupabaseConfig() {
+        return !supabaseUrl.isEmpty() && !supabaseAnonKey.isEmpty() && !supabaseUserId.isEmpty();
+    }
+
+    public String currentUserIdOr(String fallback) {
+        return currentUserId != null ? currentUserId : fallback;
+    }
+
+    public String dailyTodoTemplateOr(String fallback) {
+        return dailyTodoTemplate != null ? dailyTodoTemplate : fallback;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AppSettings)) return false;
+        AppSettings that = (AppSettings) o;
+        return dailyTodoEnabled == that.dailyTodoEnabled
+                && dailyTodoSkipHolidays == that.dailyTodoSkipHolidays
+                && supabaseUrl.equals(that.supabaseUrl)
+                && supabaseAnonKey.equals(that.supabaseAnonKey)
+                && supabaseUserId.equals(that.supabaseUserId)
+                && Objects.equals(currentUserId, that.currentUserId)
+                && Objects.equals(morningNotifyTime, that.morningNotifyTime)
+                && Objects.equals(eveningNotifyTime, that.eveningNotifyTime)
+                && Objects.equals(dailyTodoTemplate, that.dailyTodoTemplate)
+                && Objects.equals(dailyTodoLastAddedDate, that.dailyTodoLastAddedDate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(supabaseUrl, supabaseAnonKey, supabaseUserId, currentUserId,
+                morningNotifyTime, eveningNotifyTime, dailyTodoEnabled, dailyTodoSkipHolidays,
+                dailyTodoTemplate, dailyTodoLastAddedDate);
+    }
+}
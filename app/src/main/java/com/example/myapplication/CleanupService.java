@@ -83,8 +83,8 @@ public class CleanupService extends Service {
 
             SupabaseInterface supabaseInterface = new SupabaseInterface(this);
 
-            // 在后台线程执行清理
-            new Thread(() -> {
+            // 在维护通道执行清理
+            AppExecutors.getInstance().housekeeping().execute(() -> {
                 try {
                     boolean success = supabaseInterface.cleanupReadMessages(CLEANUP_DAYS_OLD);
 
@@ -99,7 +99,7 @@ public class CleanupService extends Service {
                     // 释放资源
                     supabaseInterface.destroy();
                 }
-            }).start();
+            });
 
         } catch (Exception e) {
             Log.e(TAG, "执行每日清理任务失败", e);
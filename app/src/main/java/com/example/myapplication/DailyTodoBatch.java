@@ -0,0 +1,209 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 每日待办批量写入
+ * 一天的模板在本地组装成一个数组，一次POST写入；任务id由 用户+日期+标题+负责人 确定性生成，
+ * 配合PostgREST的ignore-duplicates，重复触发或多台设备同时生成也不会产生重复任务。
+ * 写入成功的行按日期记录在NotificationLedger中：一个键记录任务id已写入，另一个键记录整行模板内容的哈希。
+ * 当天再次触发时内容未变的行直接在本地跳过，全部写入过时不发请求；
+ * 标题或负责人变化时id随之变化，按新任务写入；截止时间、优先级、分类或备注变化时id不变，
+ * 以merge-duplicates只更新这些模板字段（不影响完成状态）
+ */
+public class DailyTodoBatch {
+
+    private static final String TAG = "DailyTodoBatch";
+
+    private final String date;
+    private final String supabaseUserId;
+    private final String createdAt;
+    private final java.util.Map<String, JSONObject> rows = new java.util.LinkedHashMap<>();
+    private final java.util.Map<String, String> contentHashes = new java.util.HashMap<>();
+
+    // 模板变化时允许覆盖的字段（完成状态、创建时间等由用户操作或首次写入决定，不覆盖）
+    private static final String TEMPLATE_COLUMNS = "id,user_id,title,priority,category,deadline,assignee,notes";
+
+    /**
+     * 批量写入成功后服务端实际新建的任务
+     */
+    public static class CreatedTask {
+        public String id;
+        public String title;
+        public String assignee;
+    }
+
+    /**
+     * @param date 任务日期 (格式: yyyy-MM-dd)
+     */
+    public DailyTodoBatch(String date, String supabaseUserId) {
+        this.date = date;
+        this.supabaseUserId = supabaseUserId;
+        this.createdAt = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", java.util.Locale.getDefault())
+                .format(new java.util.Date());
+    }
+
+    /**
+     * 添加一条模板任务，同一标题和负责人在批次内只保留一条
+     * @param notes 任务备注，可以为null
+     */
+    public void add(String title, String priority, String category, String deadline,
+                    String assignee, String notes) throws JSONException {
+        String taskId = taskIdFor(supabaseUserId, date, title, assignee);
+
+        JSONObject taskData = new JSONObject();
+        taskData.put("id", taskId);
+        taskData.put("user_id", supabaseUserId);
+        taskData.put("title", title);
+        taskData.put("priority", priority);
+        taskData.put("category", category);
+        taskData.put("deadline", deadline);
+        taskData.put("assignee", assignee);
+        // 批量插入要求每个对象的字段一致，没有备注时显式写null
+        taskData.put("notes", notes != null && !notes.isEmpty() ? notes : JSONObject.NULL);
+        // 使用本地时间格式，不使用UTC标识
+        taskData.put("created_at", createdAt);
+        taskData.put("completed", false);
+
+        rows.put(taskId, taskData);
+        contentHashes.put(taskId, sha256Hex(title + "|" + priority + "|" + category + "|" + deadline + "|"
+                + assignee + "|" + (notes != null ? notes : ""), 8));
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    public boolean isEmpty() {
+        return rows.isEmpty();
+    }
+
+    /**
+     * 写入整批任务：今天已写入且内容未变的行在本地跳过；新行一次请求插入（已存在的id被服务端忽略），
+     * 内容有变化的已写入行另用一次请求只更新模板字段
+     * @param ledger 按日期记录已写入的任务id和内容哈希
+     * @return 本次实际新建的任务（已存在的和仅更新的不包含在内），请求失败返回null
+     */
+    public java.util.List<CreatedTask> submit(SupabaseHttpClient httpClient, String supabaseUrl, String supabaseAnonKey,
+                                              NotificationLedger ledger) {
+        java.util.List<CreatedTask> created = new java.util.ArrayList<>();
+
+        JSONArray inserts = new JSONArray();
+        JSONArray updates = new JSONArray();
+        java.util.List<String> pendingIds = new java.util.ArrayList<>();
+        for (java.util.Map.Entry<String, JSONObject> entry : rows.entrySet()) {
+            String taskId = entry.getKey();
+            if (ledger.containsKey(date, contentKey(taskId))) {
+                continue;
+            }
+            if (ledger.containsKey(date, ledgerKey(taskId))) {
+                updates.put(entry.getValue());
+            } else {
+                inserts.put(entry.getValue());
+            }
+            pendingIds.add(taskId);
+        }
+        if (pendingIds.isEmpty()) {
+            Log.d(TAG, "今日每日待办已全部写入，跳过请求, 日期: " + date);
+            return created;
+        }
+
+        try {
+            Log.d(TAG, "批量写入每日待办任务: 新建 " + inserts.length() + " 条, 更新 " + updates.length()
+                    + " 条 (模板共 " + rows.size() + " 条), 日期: " + date);
+
+            if (inserts.length() > 0) {
+                String createUrl = supabaseUrl + "/rest/v1/tasks?on_conflict=id&select=id,title,assignee";
+                try (SupabaseHttpClient.Response response = httpClient.send("POST", createUrl, supabaseAnonKey,
+                        inserts.toString(), "resolution=ignore-duplicates,return=representation")) {
+                    int responseCode = response.code();
+                    if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_CREATED) {
+                        Log.e(TAG, "批量创建任务失败，响应码: " + responseCode);
+                        Log.e(TAG, "错误响应: " + response.bodyString());
+                        return null;
+                    }
+
+                    // 返回的只有真正插入的行，被忽略的重复行不会出现
+                    JSONArray result = new JSONArray(response.bodyString());
+                    for (int i = 0; i < result.length(); i++) {
+                        JSONObject obj = result.getJSONObject(i);
+                        CreatedTask task = new CreatedTask();
+                        task.id = obj.optString("id");
+                        task.title = obj.optString("title");
+                        task.assignee = obj.optString("assignee");
+                        created.add(task);
+                    }
+                }
+            }
+
+            if (updates.length() > 0) {
+                // columns限定写入的字段，冲突时只合并模板字段
+                String mergeUrl = supabaseUrl + "/rest/v1/tasks?on_conflict=id&columns=" + TEMPLATE_COLUMNS;
+                try (SupabaseHttpClient.Response response = httpClient.send("POST", mergeUrl, supabaseAnonKey,
+                        updates.toString(), "resolution=merge-duplicates,return=minimal")) {
+                    int responseCode = response.code();
+                    if (responseCode < 200 || responseCode >= 300) {
+                        Log.e(TAG, "批量更新每日待办失败，响应码: " + responseCode);
+                        Log.e(TAG, "错误响应: " + response.bodyString());
+                        return null;
+                    }
+                }
+            }
+
+            // 服务端忽略的重复行同样已存在，一并记录
+            for (String taskId : pendingIds) {
+                ledger.markKey(date, ledgerKey(taskId));
+                ledger.markKey(date, contentKey(taskId));
+            }
+
+            Log.d(TAG, "批量写入完成，新建 " + created.size() + " 条，跳过已存在 " + (inserts.length() - created.size())
+                    + " 条，更新 " + updates.length() + " 条");
+            return created;
+        } catch (Exception e) {
+            Log.e(TAG, "批量写入每日待办任务异常", e);
+            return null;
+        }
+    }
+
+    private static String ledgerKey(String taskId) {
+        return "daily-todo-" + taskId;
+    }
+
+    private String contentKey(String taskId) {
+        return "daily-todo-" + taskId + "-" + contentHashes.get(taskId);
+    }
+
+    /**
+     * 根据 用户+日期+标题+负责人 生成确定性的任务id（24位十六进制，与generate_task_id()长度一致）
+     */
+    public static String taskIdFor(String supabaseUserId, String date, String title, String assignee) {
+        return sha256Hex(supabaseUserId + "|" + date + "|" + title + "|" + assignee, 12);
+    }
+
+    /**
+     * SHA-256的前bytes个字节（十六进制）
+     */
+    private static String sha256Hex(String key, int bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(bytes * 2);
+            for (int i = 0; i < bytes; i++) {
+                hex.append(String.format("%02x", hash[i] & 0xff));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256在Android上始终可用
+            throw new IllegalStateException(e);
+        }
+    }
+}
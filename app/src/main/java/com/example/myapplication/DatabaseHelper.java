@@ -5,10 +5,9 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.text.SimpleDateFormat;
@@ -21,7 +20,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String TAG = "DatabaseHelper";
     private static final String DATABASE_NAME = "todo_app.db";
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 7;
 
     // 消息表
     private static final String TABLE_MESSAGES = "messages";
@@ -38,6 +37,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_IS_READ = "is_read";
     private static final String COLUMN_CREATED_AT = "created_at";
     private static final String COLUMN_READ_AT = "read_at";
+    // Supabase messages表的id，批量同步时去重（本地创建的消息为NULL）
+    private static final String COLUMN_SERVER_ID = "server_id";
 
     // 设置表
     private static final String TABLE_USER_SETTINGS = "user_settings";
@@ -58,13 +59,164 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_AUTO_MARK_READ = "auto_mark_read";
     private static final String COLUMN_UPDATED_AT = "updated_at";
 
-    public DatabaseHelper(Context context) {
+    // 任务表（Supabase tasks表的本地副本，由TaskSyncManager同步）
+    private static final String TABLE_TASKS = "tasks";
+    private static final String COLUMN_TASKS_ID = "id";
+    private static final String COLUMN_TASK_NOTES = "notes";
+    private static final String COLUMN_TASK_NOTES_IMAGES = "notes_images";
+    private static final String COLUMN_TASK_ASSIGNEE = "assignee";
+    private static final String COLUMN_TASK_CATEGORY = "category";
+    private static final String COLUMN_TASK_PRIORITY = "priority";
+    private static final String COLUMN_TASK_COMPLETED = "completed";
+    private static final String COLUMN_TASK_DEADLINE = "deadline";
+    private static final String COLUMN_TASK_COMPLETED_AT = "completed_at";
+    // 截取为本地格式 yyyy-MM-ddTHH:mm:ss 的时间，用于索引和范围比较（与服务端查询条件一致）
+    private static final String COLUMN_TASK_DEADLINE_KEY = "deadline_key";
+    private static final String COLUMN_TASK_COMPLETED_AT_KEY = "completed_at_key";
+
+    // 同步状态表（水位等）
+    private static final String TABLE_SYNC_STATE = "sync_state";
+    private static final String COLUMN_SYNC_KEY = "key";
+    private static final String COLUMN_SYNC_VALUE = "value";
+
+    // 通知去重记录（NotificationLedger使用，按时间淘汰）
+    private static final String TABLE_NOTIFIED_MESSAGES = "notified_messages";
+    private static final String TABLE_NOTIFIED_KEYS = "notified_keys";
+    private static final String COLUMN_NOTIFIED_ID = "id";
+    private static final String COLUMN_NOTIFIED_BUCKET = "bucket";
+    private static final String COLUMN_NOTIFIED_KEY = "key";
+    private static final String COLUMN_NOTIFIED_AT = "notified_at";
+
+    // 消息查询的列（不使用SELECT *；列表页可以不读取completion_images）
+    private static final String MESSAGE_COLUMNS = COLUMN_MESSAGE_ID + ", " + COLUMN_SENDER_ID + ", "
+            + COLUMN_RECEIVER_ID + ", " + COLUMN_TASK_ID + ", " + COLUMN_MESSAGE_TYPE + ", " + COLUMN_TITLE + ", "
+            + COLUMN_CONTENT + ", " + COLUMN_TASK_TITLE + ", " + COLUMN_COMPLETION_NOTES + ", "
+            + COLUMN_IS_READ + ", " + COLUMN_CREATED_AT + ", " + COLUMN_READ_AT + ", " + COLUMN_SERVER_ID;
+    private static final String MESSAGE_COLUMNS_WITH_IMAGES = MESSAGE_COLUMNS + ", " + COLUMN_COMPLETION_IMAGES;
+
+    private static volatile DatabaseHelper instance;
+
+    // 接收者 -> 未读消息数。首次查询时用COUNT(*)走未读部分索引加载，之后由插入和标记已读增减；
+    // 修改消息表和调整计数都在该锁内进行，计数不会和表内容错开
+    private final java.util.HashMap<String, Integer> unreadCounts = new java.util.HashMap<>();
+
+    // 用户 -> 编译后的消息过滤器，保存设置时失效
+    private final java.util.HashMap<String, MessageFilter> messageFilters = new java.util.HashMap<>();
+
+    // 热点写入的预编译语句（按SQL缓存，使用时对语句加锁；连接常驻不关闭，语句一直有效）
+    private final java.util.HashMap<String, SQLiteStatement> statements = new java.util.HashMap<>();
+
+    private static final String SQL_INSERT_MESSAGE = "INSERT INTO " + TABLE_MESSAGES + " ("
+            + COLUMN_SENDER_ID + ", " + COLUMN_RECEIVER_ID + ", " + COLUMN_TASK_ID + ", " + COLUMN_MESSAGE_TYPE + ", "
+            + COLUMN_TITLE + ", " + COLUMN_CONTENT + ", " + COLUMN_TASK_TITLE + ", " + COLUMN_COMPLETION_NOTES + ", "
+            + COLUMN_COMPLETION_IMAGES + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // 批量写入：已存在的server_id直接跳过；created_at为空时使用当前时间
+    private static final String SQL_INSERT_MESSAGE_IGNORE = "INSERT OR IGNORE INTO " + TABLE_MESSAGES + " ("
+            + COLUMN_SERVER_ID + ", " + COLUMN_SENDER_ID + ", " + COLUMN_RECEIVER_ID + ", " + COLUMN_TASK_ID + ", "
+            + COLUMN_MESSAGE_TYPE + ", " + COLUMN_TITLE + ", " + COLUMN_CONTENT + ", " + COLUMN_TASK_TITLE + ", "
+            + COLUMN_COMPLETION_NOTES + ", " + COLUMN_COMPLETION_IMAGES + ", " + COLUMN_IS_READ + ", "
+            + COLUMN_CREATED_AT + ", " + COLUMN_READ_AT
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, COALESCE(?, CURRENT_TIMESTAMP), ?)";
+    private static final String SQL_MARK_MESSAGE_READ = "UPDATE " + TABLE_MESSAGES + " SET "
+            + COLUMN_IS_READ + " = 1, " + COLUMN_READ_AT + " = ? WHERE " + COLUMN_MESSAGE_ID + " = ? AND "
+            + COLUMN_IS_READ + " = 0";
+    private static final String SQL_MESSAGE_RECEIVER = "SELECT " + COLUMN_RECEIVER_ID + " FROM " + TABLE_MESSAGES
+            + " WHERE " + COLUMN_MESSAGE_ID + " = ?";
+    private static final String SQL_COUNT_UNREAD = "SELECT COUNT(*) FROM " + TABLE_MESSAGES
+            + " WHERE " + COLUMN_RECEIVER_ID + " = ? AND " + COLUMN_IS_READ + " = 0";
+    private static final String SQL_SET_SYNC_STATE = "INSERT OR REPLACE INTO " + TABLE_SYNC_STATE + " ("
+            + COLUMN_SYNC_KEY + ", " + COLUMN_SYNC_VALUE + ") VALUES (?, ?)";
+    private static final String SQL_INSERT_NOTIFIED_MESSAGE = "INSERT OR IGNORE INTO " + TABLE_NOTIFIED_MESSAGES + " ("
+            + COLUMN_NOTIFIED_ID + ", " + COLUMN_NOTIFIED_AT + ") VALUES (?, ?)";
+    private static final String SQL_INSERT_NOTIFIED_KEY = "INSERT OR IGNORE INTO " + TABLE_NOTIFIED_KEYS + " ("
+            + COLUMN_NOTIFIED_BUCKET + ", " + COLUMN_NOTIFIED_KEY + ", " + COLUMN_NOTIFIED_AT + ") VALUES (?, ?, ?)";
+
+    /**
+     * 全应用共用一个实例：连接常驻并开启WAL，通知写入和WebView读取互不阻塞，
+     * 不再每次调用都重新打开数据库文件和校验版本
+     */
+    public static DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DatabaseHelper.class) {
+                if (instance == null) {
+                    instance = new DatabaseHelper(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * 取得预编译语句，调用方需对返回的语句加锁后再绑定参数和执行
+     */
+    private SQLiteStatement statement(String sql) {
+        synchronized (statements) {
+            SQLiteStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = getWritableDatabase().compileStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static final java.time.format.DateTimeFormatter SQLITE_UTC_FORMAT =
+            java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.US);
+
+    /**
+     * 把服务端的ISO时间（如 2026-10-17T08:00:00.123+00:00）转换为本地行使用的UTC "yyyy-MM-dd HH:mm:ss"，
+     * 否则文本比较时 'T' 排在 ' ' 之后，同步来的行在 (created_at, id) 排序中总是排在前面
+     * 已是本地格式或无法解析的值原样返回
+     */
+    static String toSqliteUtc(String timestamp) {
+        if (timestamp == null || timestamp.isEmpty() || timestamp.indexOf('T') < 0) {
+            return timestamp;
+        }
+        try {
+            java.time.temporal.TemporalAccessor parsed = java.time.format.DateTimeFormatter.ISO_DATE_TIME
+                    .parseBest(timestamp, java.time.OffsetDateTime::from, java.time.LocalDateTime::from);
+            // 不带时区的ISO时间按UTC处理
+            java.time.LocalDateTime utc = parsed instanceof java.time.OffsetDateTime
+                    ? ((java.time.OffsetDateTime) parsed).atZoneSameInstant(java.time.ZoneOffset.UTC).toLocalDateTime()
+                    : (java.time.LocalDateTime) parsed;
+            return SQLITE_UTC_FORMAT.format(utc);
+        } catch (java.time.format.DateTimeParseException e) {
+            Log.w(TAG, "无法解析时间: " + timestamp);
+            return timestamp;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        synchronized (statements) {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+        }
+        super.close();
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         createTables(db);
+        createTaskTables(db);
+        createLedgerTables(db);
+        createMessagePageIndex(db);
+        createMessageServerId(db);
     }
 
     @Override
@@ -72,6 +224,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         if (oldVersion < 2) {
             createTables(db);
         }
+        if (oldVersion < 3) {
+            createTaskTables(db);
+        }
+        if (oldVersion < 4) {
+            createLedgerTables(db);
+        }
+        if (oldVersion < 5) {
+            createMessagePageIndex(db);
+        }
+        if (oldVersion < 6) {
+            createMessageServerId(db);
+        }
+        if (oldVersion < 7) {
+            // 旧版本创建的assignee索引用不上，只增加同步写入开销
+            db.execSQL("DROP INDEX IF EXISTS idx_tasks_assignee");
+        }
     }
 
     private void createTables(SQLiteDatabase db) {
@@ -124,83 +292,314 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL("CREATE INDEX IF NOT EXISTS idx_user_settings_user_id ON " + TABLE_USER_SETTINGS + "(" + COLUMN_USER_ID + ")");
     }
 
+    private void createTaskTables(SQLiteDatabase db) {
+        // 创建任务表
+        String CREATE_TASKS_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_TASKS + "("
+                + COLUMN_TASKS_ID + " TEXT PRIMARY KEY,"
+                + COLUMN_USER_ID + " TEXT,"
+                + COLUMN_TITLE + " TEXT,"
+                + COLUMN_TASK_NOTES + " TEXT,"
+                + COLUMN_TASK_NOTES_IMAGES + " TEXT,"
+                + COLUMN_TASK_ASSIGNEE + " TEXT,"
+                + COLUMN_TASK_CATEGORY + " TEXT,"
+                + COLUMN_TASK_PRIORITY + " TEXT,"
+                + COLUMN_TASK_COMPLETED + " BOOLEAN DEFAULT 0,"
+                + COLUMN_TASK_DEADLINE + " TEXT,"
+                + COLUMN_TASK_COMPLETED_AT + " TEXT,"
+                + COLUMN_CREATED_AT + " TEXT,"
+                + COLUMN_UPDATED_AT + " TEXT,"
+                + COLUMN_TASK_DEADLINE_KEY + " TEXT,"
+                + COLUMN_TASK_COMPLETED_AT_KEY + " TEXT"
+                + ")";
+
+        // 创建同步状态表
+        String CREATE_SYNC_STATE_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_SYNC_STATE + "("
+                + COLUMN_SYNC_KEY + " TEXT PRIMARY KEY,"
+                + COLUMN_SYNC_VALUE + " TEXT"
+                + ")";
+
+        db.execSQL(CREATE_TASKS_TABLE);
+        db.execSQL(CREATE_SYNC_STATE_TABLE);
+
+        // 提醒和报告都是 completed + deadline 范围查询
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_tasks_completed_deadline ON " + TABLE_TASKS
+                + "(" + COLUMN_TASK_COMPLETED + ", " + COLUMN_TASK_DEADLINE_KEY + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_tasks_completed_at ON " + TABLE_TASKS + "(" + COLUMN_TASK_COMPLETED_AT_KEY + ")");
+        // assignee按 LIKE '%x%' 包含匹配（与服务端ilike一致），前导通配符无法使用索引，不为它建索引
+    }
+
+    private void createLedgerTables(SQLiteDatabase db) {
+        // 已显示通知的消息ID
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NOTIFIED_MESSAGES + "("
+                + COLUMN_NOTIFIED_ID + " INTEGER PRIMARY KEY,"
+                + COLUMN_NOTIFIED_AT + " INTEGER NOT NULL"
+                + ")");
+        // 按日期分桶的提醒记录（到期/逾期提醒、已创建的系统消息），整桶淘汰
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NOTIFIED_KEYS + "("
+                + COLUMN_NOTIFIED_BUCKET + " TEXT NOT NULL,"
+                + COLUMN_NOTIFIED_KEY + " TEXT NOT NULL,"
+                + COLUMN_NOTIFIED_AT + " INTEGER NOT NULL,"
+                + "PRIMARY KEY (" + COLUMN_NOTIFIED_BUCKET + ", " + COLUMN_NOTIFIED_KEY + ")"
+                + ") WITHOUT ROWID");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_notified_messages_at ON " + TABLE_NOTIFIED_MESSAGES
+                + "(" + COLUMN_NOTIFIED_AT + ")");
+    }
+
+    private void createMessagePageIndex(SQLiteDatabase db) {
+        // 只索引未读消息，按接收者 + created_at 排列（id即rowid，隐含在索引末尾）：
+        // 分页查询不需要排序，未读计数只扫描该接收者的未读条目
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_messages_unread_page ON " + TABLE_MESSAGES
+                + "(" + COLUMN_RECEIVER_ID + ", " + COLUMN_CREATED_AT + ") WHERE " + COLUMN_IS_READ + " = 0");
+    }
+
+    private void createMessageServerId(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_MESSAGES + " ADD COLUMN " + COLUMN_SERVER_ID + " INTEGER");
+        // NULL互不冲突，本地创建的消息不受唯一约束影响
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_messages_server_id ON " + TABLE_MESSAGES
+                + "(" + COLUMN_SERVER_ID + ")");
+    }
+
     // 消息相关操作
     public long insertMessage(String senderId, String receiverId, Integer taskId, String messageType,
                              String title, String content, String taskTitle, String completionNotes,
                              String completionImages) {
+        SQLiteStatement statement = statement(SQL_INSERT_MESSAGE);
+        synchronized (statement) {
+            statement.clearBindings();
+            bindNullable(statement, 1, senderId);
+            bindNullable(statement, 2, receiverId);
+            if (taskId == null) {
+                statement.bindNull(3);
+            } else {
+                statement.bindLong(3, taskId);
+            }
+            bindNullable(statement, 4, messageType);
+            bindNullable(statement, 5, title);
+            bindNullable(statement, 6, content);
+            bindNullable(statement, 7, taskTitle);
+            bindNullable(statement, 8, completionNotes);
+            bindNullable(statement, 9, completionImages);
+            synchronized (unreadCounts) {
+                long messageId = statement.executeInsert();
+                if (messageId > 0) {
+                    adjustUnreadCount(receiverId, 1);
+                }
+                return messageId;
+            }
+        }
+    }
+
+    /**
+     * 用户的未读消息数（角标刷新使用，不读取消息内容）
+     */
+    public int getUnreadMessageCount(String userId) {
+        synchronized (unreadCounts) {
+            Integer count = unreadCounts.get(userId);
+            if (count == null) {
+                SQLiteStatement statement = statement(SQL_COUNT_UNREAD);
+                synchronized (statement) {
+                    statement.bindString(1, userId);
+                    count = (int) statement.simpleQueryForLong();
+                }
+                unreadCounts.put(userId, count);
+            }
+            return count;
+        }
+    }
+
+    // 只调整已加载的计数，未加载的用户下次查询时再COUNT
+    private void adjustUnreadCount(String receiverId, int delta) {
+        Integer count = unreadCounts.get(receiverId);
+        if (count != null) {
+            unreadCounts.put(receiverId, Math.max(0, count + delta));
+        }
+    }
+
+    /**
+     * 在一个事务中批量写入消息，复用同一条预编译语句；server_id已存在的消息跳过
+     * @return 实际新增的条数
+     */
+    public int insertMessages(java.util.Collection<Message> messages) {
+        if (messages.isEmpty()) {
+            return 0;
+        }
         SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
+        java.util.HashMap<String, Integer> unreadAdded = new java.util.HashMap<>();
+        int inserted = 0;
+
+        synchronized (unreadCounts) {
+            SQLiteStatement statement = statement(SQL_INSERT_MESSAGE_IGNORE);
+            synchronized (statement) {
+                db.beginTransaction();
+                try {
+                    for (Message message : messages) {
+                        statement.clearBindings();
+                        if (message.getServerId() > 0) {
+                            statement.bindLong(1, message.getServerId());
+                        }
+                        bindNullable(statement, 2, message.getSenderId());
+                        bindNullable(statement, 3, message.getReceiverId());
+                        // task_id为0表示没有关联任务
+                        if (message.getTaskId() > 0) {
+                            statement.bindLong(4, message.getTaskId());
+                        }
+                        bindNullable(statement, 5, message.getMessageType());
+                        bindNullable(statement, 6, message.getTitle());
+                        bindNullable(statement, 7, message.getContent());
+                        bindNullable(statement, 8, message.getTaskTitle());
+                        bindNullable(statement, 9, message.getCompletionNotes());
+                        bindNullable(statement, 10, message.getCompletionImages());
+                        statement.bindLong(11, message.isRead() ? 1 : 0);
+                        bindNullable(statement, 12, toSqliteUtc(message.getCreatedAt()));
+                        bindNullable(statement, 13, toSqliteUtc(message.getReadAt()));
+
+                        if (statement.executeInsert() > 0) {
+                            inserted++;
+                            if (!message.isRead()) {
+                                Integer count = unreadAdded.get(message.getReceiverId());
+                                unreadAdded.put(message.getReceiverId(), count == null ? 1 : count + 1);
+                            }
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
 
-        values.put(COLUMN_SENDER_ID, senderId);
-        values.put(COLUMN_RECEIVER_ID, receiverId);
-        values.put(COLUMN_TASK_ID, taskId);
-        values.put(COLUMN_MESSAGE_TYPE, messageType);
-        values.put(COLUMN_TITLE, title);
-        values.put(COLUMN_CONTENT, content);
-        values.put(COLUMN_TASK_TITLE, taskTitle);
-        values.put(COLUMN_COMPLETION_NOTES, completionNotes);
-        values.put(COLUMN_COMPLETION_IMAGES, completionImages);
+            // 事务提交后再调整未读计数
+            for (java.util.Map.Entry<String, Integer> entry : unreadAdded.entrySet()) {
+                adjustUnreadCount(entry.getKey(), entry.getValue());
+            }
+        }
 
-        long messageId = db.insert(TABLE_MESSAGES, null, values);
-        db.close();
-        return messageId;
+        Log.d(TAG, "批量写入消息 " + inserted + "/" + messages.size() + " 条");
+        return inserted;
     }
 
     public List<Message> getUnreadMessagesForUser(String userId) {
+        return queryUnreadMessages(userId, null, 0, 0, true);
+    }
+
+    /**
+     * 按 (created_at, id) 倒序分页读取未读消息
+     * @param beforeCreatedAt 上一页最后一条的created_at，为null时从最新一条开始
+     * @param beforeId 上一页最后一条的id
+     * @param limit 每页条数
+     * @param includeImages 是否读取completion_images（列表页不需要，可以跳过）
+     */
+    public MessagePage getUnreadMessagesPage(String userId, String beforeCreatedAt, long beforeId,
+                                             int limit, boolean includeImages) {
+        int pageSize = Math.max(1, limit);
+        // 多取一条判断是否还有下一页
+        List<Message> messages = queryUnreadMessages(userId, beforeCreatedAt, beforeId, pageSize + 1, includeImages);
+
+        MessagePage page = new MessagePage();
+        page.hasMore = messages.size() > pageSize;
+        page.messages = page.hasMore ? new ArrayList<>(messages.subList(0, pageSize)) : messages;
+        if (page.hasMore) {
+            Message last = page.messages.get(pageSize - 1);
+            page.nextCreatedAt = last.getCreatedAt();
+            page.nextId = last.getId();
+        }
+        return page;
+    }
+
+    private List<Message> queryUnreadMessages(String userId, String beforeCreatedAt, long beforeId,
+                                              int limit, boolean includeImages) {
         List<Message> messages = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
 
-        String selectQuery = "SELECT * FROM " + TABLE_MESSAGES +
-                           " WHERE " + COLUMN_RECEIVER_ID + " = ? AND " + COLUMN_IS_READ + " = 0" +
-                           " ORDER BY " + COLUMN_CREATED_AT + " DESC";
-
-        Cursor cursor = db.rawQuery(selectQuery, new String[]{userId});
+        StringBuilder selectQuery = new StringBuilder("SELECT ")
+                .append(includeImages ? MESSAGE_COLUMNS_WITH_IMAGES : MESSAGE_COLUMNS)
+                .append(" FROM ").append(TABLE_MESSAGES)
+                .append(" WHERE ").append(COLUMN_RECEIVER_ID).append(" = ? AND ").append(COLUMN_IS_READ).append(" = 0");
+        List<String> args = new ArrayList<>();
+        args.add(userId);
+        if (beforeCreatedAt != null) {
+            selectQuery.append(" AND (").append(COLUMN_CREATED_AT).append(" < ? OR (")
+                    .append(COLUMN_CREATED_AT).append(" = ? AND ").append(COLUMN_MESSAGE_ID).append(" < ?))");
+            args.add(beforeCreatedAt);
+            args.add(beforeCreatedAt);
+            args.add(String.valueOf(beforeId));
+        }
+        selectQuery.append(" ORDER BY ").append(COLUMN_CREATED_AT).append(" DESC, ")
+                .append(COLUMN_MESSAGE_ID).append(" DESC");
+        if (limit > 0) {
+            selectQuery.append(" LIMIT ").append(limit);
+        }
 
-        if (cursor.moveToFirst()) {
-            do {
+        try (Cursor cursor = db.rawQuery(selectQuery.toString(), args.toArray(new String[0]))) {
+            // 列序号每个游标只解析一次
+            int idIndex = cursor.getColumnIndexOrThrow(COLUMN_MESSAGE_ID);
+            int senderIndex = cursor.getColumnIndexOrThrow(COLUMN_SENDER_ID);
+            int receiverIndex = cursor.getColumnIndexOrThrow(COLUMN_RECEIVER_ID);
+            int taskIdIndex = cursor.getColumnIndexOrThrow(COLUMN_TASK_ID);
+            int typeIndex = cursor.getColumnIndexOrThrow(COLUMN_MESSAGE_TYPE);
+            int titleIndex = cursor.getColumnIndexOrThrow(COLUMN_TITLE);
+            int contentIndex = cursor.getColumnIndexOrThrow(COLUMN_CONTENT);
+            int taskTitleIndex = cursor.getColumnIndexOrThrow(COLUMN_TASK_TITLE);
+            int notesIndex = cursor.getColumnIndexOrThrow(COLUMN_COMPLETION_NOTES);
+            int imagesIndex = cursor.getColumnIndex(COLUMN_COMPLETION_IMAGES);
+            int isReadIndex = cursor.getColumnIndexOrThrow(COLUMN_IS_READ);
+            int createdAtIndex = cursor.getColumnIndexOrThrow(COLUMN_CREATED_AT);
+            int readAtIndex = cursor.getColumnIndexOrThrow(COLUMN_READ_AT);
+            int serverIdIndex = cursor.getColumnIndexOrThrow(COLUMN_SERVER_ID);
+
+            while (cursor.moveToNext()) {
                 Message message = new Message();
-                message.setId(cursor.getLong(cursor.getColumnIndex(COLUMN_MESSAGE_ID)));
-                message.setSenderId(cursor.getString(cursor.getColumnIndex(COLUMN_SENDER_ID)));
-                message.setReceiverId(cursor.getString(cursor.getColumnIndex(COLUMN_RECEIVER_ID)));
-                message.setTaskId(cursor.getInt(cursor.getColumnIndex(COLUMN_TASK_ID)));
-                message.setMessageType(cursor.getString(cursor.getColumnIndex(COLUMN_MESSAGE_TYPE)));
-                message.setTitle(cursor.getString(cursor.getColumnIndex(COLUMN_TITLE)));
-                message.setContent(cursor.getString(cursor.getColumnIndex(COLUMN_CONTENT)));
-                message.setTaskTitle(cursor.getString(cursor.getColumnIndex(COLUMN_TASK_TITLE)));
-                message.setCompletionNotes(cursor.getString(cursor.getColumnIndex(COLUMN_COMPLETION_NOTES)));
-                message.setCompletionImages(cursor.getString(cursor.getColumnIndex(COLUMN_COMPLETION_IMAGES)));
-                message.setRead(cursor.getInt(cursor.getColumnIndex(COLUMN_IS_READ)) == 1);
-                message.setCreatedAt(cursor.getString(cursor.getColumnIndex(COLUMN_CREATED_AT)));
-                message.setReadAt(cursor.getString(cursor.getColumnIndex(COLUMN_READ_AT)));
+                message.setId(cursor.getLong(idIndex));
+                message.setSenderId(cursor.getString(senderIndex));
+                message.setReceiverId(cursor.getString(receiverIndex));
+                message.setTaskId(cursor.getInt(taskIdIndex));
+                message.setMessageType(cursor.getString(typeIndex));
+                message.setTitle(cursor.getString(titleIndex));
+                message.setContent(cursor.getString(contentIndex));
+                message.setTaskTitle(cursor.getString(taskTitleIndex));
+                message.setCompletionNotes(cursor.getString(notesIndex));
+                if (imagesIndex >= 0) {
+                    message.setCompletionImages(cursor.getString(imagesIndex));
+                }
+                message.setRead(cursor.getInt(isReadIndex) == 1);
+                message.setCreatedAt(cursor.getString(createdAtIndex));
+                message.setReadAt(cursor.getString(readAtIndex));
+                message.setServerId(cursor.isNull(serverIdIndex) ? 0 : cursor.getLong(serverIdIndex));
 
                 messages.add(message);
-            } while (cursor.moveToNext());
+            }
         }
-
-        cursor.close();
-        db.close();
         return messages;
     }
 
     public void markMessageAsRead(long messageId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COLUMN_IS_READ, 1);
-        values.put(COLUMN_READ_AT, getCurrentTimestamp());
-
-        db.update(TABLE_MESSAGES, values, COLUMN_MESSAGE_ID + " = ?", new String[]{String.valueOf(messageId)});
-        db.close();
+        synchronized (unreadCounts) {
+            int updated;
+            SQLiteStatement statement = statement(SQL_MARK_MESSAGE_READ);
+            synchronized (statement) {
+                statement.bindString(1, getCurrentTimestamp());
+                statement.bindLong(2, messageId);
+                updated = statement.executeUpdateDelete();
+            }
+            // 已读消息不会再更新，只有真正从未读变为已读时才减计数
+            if (updated > 0 && !unreadCounts.isEmpty()) {
+                SQLiteStatement receiver = statement(SQL_MESSAGE_RECEIVER);
+                synchronized (receiver) {
+                    receiver.bindLong(1, messageId);
+                    adjustUnreadCount(receiver.simpleQueryForString(), -1);
+                }
+            }
+        }
     }
 
     // 设置相关操作
     public UserSettings getUserSettings(String userId) {
         SQLiteDatabase db = this.getReadableDatabase();
         String selectQuery = "SELECT * FROM " + TABLE_USER_SETTINGS + " WHERE " + COLUMN_USER_ID + " = ?";
-        Cursor cursor = db.rawQuery(selectQuery, new String[]{userId});
-
-        UserSettings settings = null;
-        if (cursor.moveToFirst()) {
-            settings = new UserSettings();
+        try (Cursor cursor = db.rawQuery(selectQuery, new String[]{userId})) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            UserSettings settings = new UserSettings();
             settings.setUserId(cursor.getString(cursor.getColumnIndex(COLUMN_USER_ID)));
             settings.setReceiveTaskComplete(cursor.getInt(cursor.getColumnIndex(COLUMN_RECEIVE_TASK_COMPLETE)) == 1);
             settings.setReceiveTaskAssigned(cursor.getInt(cursor.getColumnIndex(COLUMN_RECEIVE_TASK_ASSIGNED)) == 1);
@@ -215,11 +614,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             settings.setReceiveOutsideWorkHours(cursor.getInt(cursor.getColumnIndex(COLUMN_RECEIVE_OUTSIDE_WORK_HOURS)) == 1);
             settings.setMessagePreview(cursor.getInt(cursor.getColumnIndex(COLUMN_MESSAGE_PREVIEW)) == 1);
             settings.setAutoMarkRead(cursor.getInt(cursor.getColumnIndex(COLUMN_AUTO_MARK_READ)) == 1);
+            return settings;
         }
-
-        cursor.close();
-        db.close();
-        return settings;
     }
 
     public long insertOrUpdateUserSettings(UserSettings settings) {
@@ -242,69 +638,295 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COLUMN_AUTO_MARK_READ, settings.isAutoMarkRead() ? 1 : 0);
         values.put(COLUMN_UPDATED_AT, getCurrentTimestamp());
 
-        long result = db.insertWithOnConflict(TABLE_USER_SETTINGS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
-        db.close();
-        return result;
+        synchronized (messageFilters) {
+            long result = db.insertWithOnConflict(TABLE_USER_SETTINGS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            messageFilters.remove(settings.getUserId());
+            return result;
+        }
     }
 
     // 检查用户是否应该接收消息
     public boolean shouldReceiveMessage(String receiverId, String senderId, String messageType) {
-        UserSettings settings = getUserSettings(receiverId);
-        if (settings == null) {
-            return true; // 默认接收所有消息
-        }
-
-        // 检查消息类型设置
-        switch (messageType) {
-            case "task_complete":
-                if (!settings.isReceiveTaskComplete()) return false;
-                break;
-            case "task_assigned":
-                if (!settings.isReceiveTaskAssigned()) return false;
-                break;
-            case "system":
-                if (!settings.isReceiveSystemMessages()) return false;
-                break;
-        }
-
-        // 检查发送人黑名单
-        if (settings.getBlockedSenders() != null && !settings.getBlockedSenders().isEmpty()) {
-            try {
-                JSONArray blocked = new JSONArray(settings.getBlockedSenders());
-                for (int i = 0; i < blocked.length(); i++) {
-                    if (senderId.equals(blocked.getString(i))) {
-                        return false;
-                    }
-                }
-            } catch (JSONException e) {
-                Log.e(TAG, "Error parsing blocked senders", e);
+        return getMessageFilter(receiverId).accepts(senderId, messageType);
+    }
+
+    /**
+     * 用户的消息过滤器，首次使用时读取设置并编译，之后直接使用缓存
+     */
+    public MessageFilter getMessageFilter(String userId) {
+        synchronized (messageFilters) {
+            MessageFilter filter = messageFilters.get(userId);
+            if (filter == null) {
+                filter = MessageFilter.compile(getUserSettings(userId));
+                messageFilters.put(userId, filter);
             }
+            return filter;
         }
+    }
+
+    // 任务副本相关操作
+
+    /**
+     * 在一个事务中写入同步结果
+     * @param replaceAll 为true时先清空本地任务（全量同步）
+     * @param state 同时写入的同步状态，与任务数据一起提交
+     * @return 实际写入的任务数（增量同步时跳过本地已有且updated_at相同的行）
+     */
+    public int applyTaskSync(List<SupabaseInterface.DetailedTask> tasks, boolean replaceAll,
+                             java.util.Map<String, String> state) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int written = 0;
+        db.beginTransaction();
+        try {
+            if (replaceAll) {
+                db.delete(TABLE_TASKS, null, null);
+            }
 
-        // 检查发送人白名单
-        if (settings.getAllowedSenders() != null && !settings.getAllowedSenders().isEmpty()) {
-            try {
-                JSONArray allowed = new JSONArray(settings.getAllowedSenders());
-                boolean found = false;
-                for (int i = 0; i < allowed.length(); i++) {
-                    if (senderId.equals(allowed.getString(i))) {
-                        found = true;
-                        break;
+            for (SupabaseInterface.DetailedTask task : tasks) {
+                // 增量同步会重新拉取水位前的重叠窗口，本地已是同一版本的行不重复写入
+                if (!replaceAll && task.updatedAt != null) {
+                    try (Cursor cursor = db.query(TABLE_TASKS, new String[]{COLUMN_UPDATED_AT},
+                            COLUMN_TASKS_ID + " = ?", new String[]{task.taskId}, null, null, null)) {
+                        if (cursor.moveToFirst() && task.updatedAt.equals(cursor.getString(0))) {
+                            continue;
+                        }
                     }
                 }
-                if (!found) return false;
-            } catch (JSONException e) {
-                Log.e(TAG, "Error parsing allowed senders", e);
+
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_TASKS_ID, task.taskId);
+                values.put(COLUMN_USER_ID, task.userId);
+                values.put(COLUMN_TITLE, task.title);
+                values.put(COLUMN_TASK_NOTES, task.notes);
+                values.put(COLUMN_TASK_NOTES_IMAGES, task.notesImages);
+                values.put(COLUMN_TASK_ASSIGNEE, task.assignee);
+                values.put(COLUMN_TASK_CATEGORY, task.category);
+                values.put(COLUMN_TASK_PRIORITY, task.priority);
+                values.put(COLUMN_TASK_COMPLETED, task.completed ? 1 : 0);
+                values.put(COLUMN_TASK_DEADLINE, task.deadline);
+                values.put(COLUMN_TASK_COMPLETED_AT, task.completedAt);
+                values.put(COLUMN_CREATED_AT, task.createdAt);
+                values.put(COLUMN_UPDATED_AT, task.updatedAt);
+                values.put(COLUMN_TASK_DEADLINE_KEY, toTimestampKey(task.deadline));
+                values.put(COLUMN_TASK_COMPLETED_AT_KEY, toTimestampKey(task.completedAt));
+                db.insertWithOnConflict(TABLE_TASKS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                written++;
+            }
+
+            for (java.util.Map.Entry<String, String> entry : state.entrySet()) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_SYNC_KEY, entry.getKey());
+                values.put(COLUMN_SYNC_VALUE, entry.getValue());
+                db.insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return written;
+    }
+
+    public String getSyncState(String key) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_SYNC_STATE, new String[]{COLUMN_SYNC_VALUE},
+                COLUMN_SYNC_KEY + " = ?", new String[]{key}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    public void setSyncState(String key, String value) {
+        SQLiteStatement statement = statement(SQL_SET_SYNC_STATE);
+        synchronized (statement) {
+            statement.bindString(1, key);
+            bindNullable(statement, 2, value);
+            statement.executeInsert();
+        }
+    }
+
+    /**
+     * notifiedAt不早于since的已通知消息ID
+     */
+    public long[] getNotifiedMessageIds(long since) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_NOTIFIED_MESSAGES, new String[]{COLUMN_NOTIFIED_ID},
+                COLUMN_NOTIFIED_AT + " >= ?", new String[]{String.valueOf(since)}, null, null, null)) {
+            long[] ids = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i++] = cursor.getLong(0);
             }
+            return ids;
         }
+    }
 
-        // 检查工作时间
-        if (!settings.isReceiveOutsideWorkHours()) {
-            // 这里可以添加工作时间检查逻辑
-            // 为简化，暂时跳过
+    public void insertNotifiedMessage(long id, long notifiedAt) {
+        SQLiteStatement statement = statement(SQL_INSERT_NOTIFIED_MESSAGE);
+        synchronized (statement) {
+            statement.bindLong(1, id);
+            statement.bindLong(2, notifiedAt);
+            statement.executeInsert();
         }
+    }
 
-        return true;
+    public List<String> getNotifiedKeys(String bucket) {
+        List<String> keys = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_NOTIFIED_KEYS, new String[]{COLUMN_NOTIFIED_KEY},
+                COLUMN_NOTIFIED_BUCKET + " = ?", new String[]{bucket}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        }
+        return keys;
+    }
+
+    public void insertNotifiedKey(String bucket, String key, long notifiedAt) {
+        SQLiteStatement statement = statement(SQL_INSERT_NOTIFIED_KEY);
+        synchronized (statement) {
+            statement.bindString(1, bucket);
+            statement.bindString(2, key);
+            statement.bindLong(3, notifiedAt);
+            statement.executeInsert();
+        }
+    }
+
+    /**
+     * 淘汰早于messageCutoff的消息记录和早于oldestBucket的分桶
+     */
+    public void pruneNotificationLedger(long messageCutoff, String oldestBucket) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int messages = db.delete(TABLE_NOTIFIED_MESSAGES, COLUMN_NOTIFIED_AT + " < ?",
+                new String[]{String.valueOf(messageCutoff)});
+        int keys = db.delete(TABLE_NOTIFIED_KEYS, COLUMN_NOTIFIED_BUCKET + " < ?", new String[]{oldestBucket});
+        Log.d(TAG, "清理通知去重记录，消息: " + messages + ", 提醒: " + keys);
+    }
+
+    public int getTaskCount() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return (int) android.database.DatabaseUtils.queryNumEntries(db, TABLE_TASKS);
+    }
+
+    /**
+     * 截止时间在 [dayStart, dayEnd) 内的任务
+     */
+    public List<SupabaseInterface.DetailedTask> getTasksDueBetween(String assignee, String dayStart, String dayEnd) {
+        return queryTasks(assignee,
+                COLUMN_TASK_DEADLINE_KEY + " >= ? AND " + COLUMN_TASK_DEADLINE_KEY + " < ?",
+                new String[]{dayStart, dayEnd}, COLUMN_TASK_DEADLINE_KEY);
+    }
+
+    /**
+     * 截止时间在 [dayStart, dayEnd) 内且未完成的任务
+     */
+    public List<SupabaseInterface.DetailedTask> getPendingTasksDueBetween(String assignee, String dayStart, String dayEnd) {
+        return queryTasks(assignee,
+                COLUMN_TASK_COMPLETED + " = 0 AND " + COLUMN_TASK_DEADLINE_KEY + " >= ? AND " + COLUMN_TASK_DEADLINE_KEY + " < ?",
+                new String[]{dayStart, dayEnd}, COLUMN_TASK_DEADLINE_KEY);
+    }
+
+    /**
+     * 完成时间在 [dayStart, dayEnd) 内的已完成任务
+     */
+    public List<SupabaseInterface.DetailedTask> getTasksCompletedBetween(String assignee, String dayStart, String dayEnd) {
+        return queryTasks(assignee,
+                COLUMN_TASK_COMPLETED + " = 1 AND " + COLUMN_TASK_COMPLETED_AT_KEY + " >= ? AND " + COLUMN_TASK_COMPLETED_AT_KEY + " < ?",
+                new String[]{dayStart, dayEnd}, COLUMN_TASK_COMPLETED_AT_KEY);
+    }
+
+    /**
+     * 截止时间在 [now, until] 内的未完成任务
+     */
+    public List<SupabaseInterface.DetailedTask> getUpcomingDeadlineTasks(String assignee, String now, String until) {
+        return queryTasks(assignee,
+                COLUMN_TASK_COMPLETED + " = 0 AND " + COLUMN_TASK_DEADLINE_KEY + " >= ? AND " + COLUMN_TASK_DEADLINE_KEY + " <= ?",
+                new String[]{now, until}, COLUMN_TASK_DEADLINE_KEY);
+    }
+
+    /**
+     * 截止时间早于now的未完成任务
+     */
+    public List<SupabaseInterface.DetailedTask> getOverdueTasks(String assignee, String now) {
+        return queryTasks(assignee,
+                COLUMN_TASK_COMPLETED + " = 0 AND " + COLUMN_TASK_DEADLINE_KEY + " < ?",
+                new String[]{now}, COLUMN_TASK_DEADLINE_KEY);
+    }
+
+    /**
+     * 有截止时间的未完成任务（到期和逾期提醒的定时器使用）
+     */
+    public List<SupabaseInterface.DetailedTask> getOpenTasksWithDeadline(String assignee) {
+        return queryTasks(assignee,
+                COLUMN_TASK_COMPLETED + " = 0 AND " + COLUMN_TASK_DEADLINE_KEY + " IS NOT NULL",
+                new String[0], COLUMN_TASK_DEADLINE_KEY);
+    }
+
+    /**
+     * 分配给指定用户的全部任务（assignee可能是逗号分割的多个用户，按包含匹配，与服务端ilike一致）
+     */
+    public List<SupabaseInterface.DetailedTask> getTasksForAssignee(String assignee) {
+        return queryTasks(assignee, null, new String[0], COLUMN_TASK_DEADLINE_KEY);
+    }
+
+    private List<SupabaseInterface.DetailedTask> queryTasks(String assignee, String where, String[] whereArgs, String orderBy) {
+        StringBuilder selection = new StringBuilder(COLUMN_TASK_ASSIGNEE + " LIKE ?");
+        if (where != null) {
+            selection.append(" AND ").append(where);
+        }
+        String[] args = new String[whereArgs.length + 1];
+        // SQLite的LIKE对ASCII字符不区分大小写，与ilike一致
+        args[0] = "%" + (assignee != null ? assignee : "") + "%";
+        System.arraycopy(whereArgs, 0, args, 1, whereArgs.length);
+
+        List<SupabaseInterface.DetailedTask> tasks = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        try (Cursor cursor = db.query(TABLE_TASKS, null, selection.toString(), args, null, null, orderBy + " ASC")) {
+            while (cursor.moveToNext()) {
+                SupabaseInterface.DetailedTask task = new SupabaseInterface.DetailedTask();
+                task.taskId = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASKS_ID));
+                try {
+                    task.id = Long.parseLong(task.taskId);
+                } catch (NumberFormatException e) {
+                    task.id = 0;
+                }
+                task.userId = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USER_ID));
+                task.title = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TITLE));
+                task.description = "";
+                task.notes = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASK_NOTES));
+                task.notesImages = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASK_NOTES_IMAGES));
+                task.assignee = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASK_ASSIGNEE));
+                task.category = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASK_CATEGORY));
+                task.priority = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASK_PRIORITY));
+                task.completed = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_TASK_COMPLETED)) == 1;
+                task.status = task.completed ? "completed" : "pending";
+                task.date = "";
+                task.deadline = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASK_DEADLINE));
+                task.completedAt = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TASK_COMPLETED_AT));
+                task.createdAt = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_CREATED_AT));
+                task.updatedAt = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UPDATED_AT));
+                task.tags = "";
+                task.attachments = "";
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    /**
+     * 将服务端时间戳截取为 yyyy-MM-ddTHH:mm:ss，空值返回null
+     */
+    public static String toTimestampKey(String timestamp) {
+        if (timestamp == null || timestamp.isEmpty()) {
+            return null;
+        }
+        String normalized = timestamp.replace(' ', 'T');
+        if (normalized.length() >= 19) {
+            return normalized.substring(0, 19);
+        }
+        if (normalized.length() == 10) {
+            return normalized + "T00:00:00";
+        }
+        return normalized;
     }
 
     private String getCurrentTimestamp() {
@@ -312,6 +934,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return sdf.format(new Date());
     }
 
+    // 未读消息分页结果，hasMore为true时用nextCreatedAt/nextId请求下一页
+    public static class MessagePage {
+        public List<Message> messages;
+        public boolean hasMore;
+        public String nextCreatedAt;
+        public long nextId;
+    }
+
     // 消息数据模型
     public static class Message {
         private long id;
@@ -327,6 +957,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         private boolean isRead;
         private String createdAt;
         private String readAt;
+        private long serverId;
 
         // Getters and Setters
         public long getId() { return id; }
@@ -367,6 +998,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         public String getReadAt() { return readAt; }
         public void setReadAt(String readAt) { this.readAt = readAt; }
+
+        public long getServerId() { return serverId; }
+        public void setServerId(long serverId) { this.serverId = serverId; }
     }
 
     // 用户设置数据模型
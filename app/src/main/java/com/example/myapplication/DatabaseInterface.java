@@ -4,6 +4,7 @@ import android.content.Context;
 import android.util.Log;
 import android.webkit.JavascriptInterface;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -18,7 +19,7 @@ public class DatabaseInterface {
 
     public DatabaseInterface(Context context) {
         this.context = context;
-        this.databaseHelper = new DatabaseHelper(context);
+        this.databaseHelper = DatabaseHelper.getInstance(context);
     }
 
     /**
@@ -60,6 +61,51 @@ public class DatabaseInterface {
         }
     }
 
+    /**
+     * 批量插入消息（JSON数组），在一个事务中写入，server_id已存在的消息跳过
+     * 只使用显式的server_id字段：id可能是本地行的SQLite id，当作server_id会与真实的服务端id冲突而被忽略
+     * @return 新增的条数，失败时返回-1
+     */
+    @JavascriptInterface
+    public int insertMessages(String messagesJson) {
+        try {
+            JSONArray array = new JSONArray(messagesJson);
+            java.util.List<DatabaseHelper.Message> messages = new java.util.ArrayList<>(array.length());
+
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject messageData = array.getJSONObject(i);
+
+                DatabaseHelper.Message message = new DatabaseHelper.Message();
+                message.setServerId(messageData.optLong("server_id", 0));
+                message.setSenderId(messageData.optString("sender_id"));
+                message.setReceiverId(messageData.optString("receiver_id"));
+                message.setTaskId(messageData.isNull("task_id") ? 0 : messageData.optInt("task_id", 0));
+                message.setMessageType(messageData.optString("message_type", "task_complete"));
+                message.setTitle(messageData.optString("title"));
+                message.setContent(messageData.optString("content"));
+                message.setTaskTitle(messageData.optString("task_title", null));
+                message.setCompletionNotes(messageData.optString("completion_notes", null));
+                message.setCompletionImages(messageData.optString("completion_images", null));
+                Object isRead = messageData.opt("is_read");
+                message.setRead(isRead instanceof Number ? ((Number) isRead).intValue() != 0
+                                                         : messageData.optBoolean("is_read", false));
+                message.setCreatedAt(messageData.isNull("created_at") ? null : messageData.optString("created_at", null));
+                message.setReadAt(messageData.isNull("read_at") ? null : messageData.optString("read_at", null));
+                messages.add(message);
+            }
+
+            int inserted = databaseHelper.insertMessages(messages);
+            Log.d(TAG, "批量插入消息完成，新增: " + inserted + "，收到: " + messages.size());
+            return inserted;
+        } catch (JSONException e) {
+            Log.e(TAG, "解析消息JSON数组失败", e);
+            return -1;
+        } catch (Exception e) {
+            Log.e(TAG, "批量插入消息失败", e);
+            return -1;
+        }
+    }
+
     /**
      * 获取当前用户的未读消息数量
      */
@@ -70,7 +116,7 @@ public class DatabaseInterface {
                 return 0;
             }
 
-            return databaseHelper.getUnreadMessagesForUser(userId).size();
+            return databaseHelper.getUnreadMessageCount(userId);
         } catch (Exception e) {
             Log.e(TAG, "获取未读消息数量失败", e);
             return 0;
@@ -104,34 +150,8 @@ public class DatabaseInterface {
 
             var messages = databaseHelper.getUnreadMessagesForUser(userId);
 
-            // 转换为JSON字符串
             StringBuilder jsonBuilder = new StringBuilder();
-            jsonBuilder.append("[");
-
-            for (int i = 0; i < messages.size(); i++) {
-                if (i > 0) {
-                    jsonBuilder.append(",");
-                }
-
-                DatabaseHelper.Message message = messages.get(i);
-                jsonBuilder.append("{");
-                jsonBuilder.append("\"id\":").append(message.getId()).append(",");
-                jsonBuilder.append("\"sender_id\":\"").append(escapeJson(message.getSenderId())).append("\",");
-                jsonBuilder.append("\"receiver_id\":\"").append(escapeJson(message.getReceiverId())).append("\",");
-                jsonBuilder.append("\"task_id\":").append(message.getTaskId()).append(",");
-                jsonBuilder.append("\"message_type\":\"").append(escapeJson(message.getMessageType())).append("\",");
-                jsonBuilder.append("\"title\":\"").append(escapeJson(message.getTitle())).append("\",");
-                jsonBuilder.append("\"content\":\"").append(escapeJson(message.getContent())).append("\",");
-                jsonBuilder.append("\"task_title\":\"").append(escapeJson(message.getTaskTitle())).append("\",");
-                jsonBuilder.append("\"completion_notes\":\"").append(escapeJson(message.getCompletionNotes())).append("\",");
-                jsonBuilder.append("\"completion_images\":\"").append(escapeJson(message.getCompletionImages())).append("\",");
-                jsonBuilder.append("\"is_read\":").append(message.isRead()).append(",");
-                jsonBuilder.append("\"created_at\":\"").append(escapeJson(message.getCreatedAt())).append("\",");
-                jsonBuilder.append("\"read_at\":\"").append(escapeJson(message.getReadAt())).append("\"");
-                jsonBuilder.append("}");
-            }
-
-            jsonBuilder.append("]");
+            appendMessagesJson(jsonBuilder, messages);
             return jsonBuilder.toString();
 
         } catch (Exception e) {
@@ -140,6 +160,72 @@ public class DatabaseInterface {
         }
     }
 
+    /**
+     * 分页获取用户的未读消息（JSON格式）
+     * 返回 {"messages":[...],"has_more":true,"next_cursor":{"created_at":"...","id":123}}，
+     * 请求下一页时把next_cursor的两个值传回；第一页beforeCreatedAt传null
+     */
+    @JavascriptInterface
+    public String getUnreadMessagesPage(String userId, String beforeCreatedAt, long beforeId,
+                                        int limit, boolean includeImages) {
+        try {
+            if (userId == null || userId.trim().isEmpty()) {
+                return "{\"messages\":[],\"has_more\":false,\"next_cursor\":null}";
+            }
+
+            String cursorCreatedAt = beforeCreatedAt == null || beforeCreatedAt.isEmpty() ? null : beforeCreatedAt;
+            DatabaseHelper.MessagePage page = databaseHelper.getUnreadMessagesPage(
+                userId, cursorCreatedAt, beforeId, limit, includeImages);
+
+            StringBuilder jsonBuilder = new StringBuilder();
+            jsonBuilder.append("{\"messages\":");
+            appendMessagesJson(jsonBuilder, page.messages);
+            jsonBuilder.append(",\"has_more\":").append(page.hasMore);
+            jsonBuilder.append(",\"next_cursor\":");
+            if (page.hasMore) {
+                jsonBuilder.append("{\"created_at\":\"").append(escapeJson(page.nextCreatedAt)).append("\",");
+                jsonBuilder.append("\"id\":").append(page.nextId).append("}");
+            } else {
+                jsonBuilder.append("null");
+            }
+            jsonBuilder.append("}");
+            return jsonBuilder.toString();
+
+        } catch (Exception e) {
+            Log.e(TAG, "分页获取未读消息失败", e);
+            return "{\"messages\":[],\"has_more\":false,\"next_cursor\":null}";
+        }
+    }
+
+    private void appendMessagesJson(StringBuilder jsonBuilder, java.util.List<DatabaseHelper.Message> messages) {
+        jsonBuilder.append("[");
+
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                jsonBuilder.append(",");
+            }
+
+            DatabaseHelper.Message message = messages.get(i);
+            jsonBuilder.append("{");
+            jsonBuilder.append("\"id\":").append(message.getId()).append(",");
+            jsonBuilder.append("\"sender_id\":\"").append(escapeJson(message.getSenderId())).append("\",");
+            jsonBuilder.append("\"receiver_id\":\"").append(escapeJson(message.getReceiverId())).append("\",");
+            jsonBuilder.append("\"task_id\":").append(message.getTaskId()).append(",");
+            jsonBuilder.append("\"message_type\":\"").append(escapeJson(message.getMessageType())).append("\",");
+            jsonBuilder.append("\"title\":\"").append(escapeJson(message.getTitle())).append("\",");
+            jsonBuilder.append("\"content\":\"").append(escapeJson(message.getContent())).append("\",");
+            jsonBuilder.append("\"task_title\":\"").append(escapeJson(message.getTaskTitle())).append("\",");
+            jsonBuilder.append("\"completion_notes\":\"").append(escapeJson(message.getCompletionNotes())).append("\",");
+            jsonBuilder.append("\"completion_images\":\"").append(escapeJson(message.getCompletionImages())).append("\",");
+            jsonBuilder.append("\"is_read\":").append(message.isRead()).append(",");
+            jsonBuilder.append("\"created_at\":\"").append(escapeJson(message.getCreatedAt())).append("\",");
+            jsonBuilder.append("\"read_at\":\"").append(escapeJson(message.getReadAt())).append("\"");
+            jsonBuilder.append("}");
+        }
+
+        jsonBuilder.append("]");
+    }
+
     /**
      * 清理旧消息（保留最近30天的消息）
      */
@@ -169,6 +255,7 @@ public class DatabaseInterface {
             // 保存到SharedPreferences
             android.content.SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
             prefs.edit().putString("current_user_id", userId.trim()).apply();
+            AppSettings.reload(context);
 
             Log.d(TAG, "用户ID已更新到SharedPreferences: " + userId);
             return true;
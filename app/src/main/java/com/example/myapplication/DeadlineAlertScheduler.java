@@ -0,0 +1,248 @@
+package com.example.myapplication;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务到期和逾期提醒的本地定时器
+ * 每个未完成任务有两个触发点：截止前24小时（即将到期）和截止时间（逾期）。
+ * 触发点按时间排序保存，只在最早的触发点安排一次定时，不需要轮询服务端；
+ * 同时为最早的触发点注册精确闹钟，进程被回收或设备doze时由ReportAlarmReceiver拉起服务。
+ * 触发点只在本地任务副本变化、用户变化或日期切换时重建
+ */
+public class DeadlineAlertScheduler {
+
+    private static final String TAG = "DeadlineAlertScheduler";
+
+    // 截止前多久发送即将到期提醒
+    public static final long WARNING_WINDOW_MS = 24 * 60 * 60 * 1000L;
+
+    private static final int ALARM_REQUEST_CODE = 2004;
+
+    /**
+     * 到点的提醒（在SYNC通道回调）
+     */
+    public interface Listener {
+        /**
+         * @param dueSoon 进入24小时提醒窗口的任务
+         * @param overdue 已过截止时间的任务
+         */
+        void onDeadlineAlerts(java.util.List<SupabaseInterface.DetailedTask> dueSoon,
+                              java.util.List<SupabaseInterface.DetailedTask> overdue);
+    }
+
+    private static class Timer {
+        final SupabaseInterface.DetailedTask task;
+        final boolean overdue;
+
+        Timer(SupabaseInterface.DetailedTask task, boolean overdue) {
+            this.task = task;
+            this.overdue = overdue;
+        }
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final AppExecutors executors = AppExecutors.getInstance();
+
+    // 触发时间 -> 该时刻到点的提醒
+    private final java.util.TreeMap<Long, java.util.List<Timer>> timers = new java.util.TreeMap<>();
+    private ScheduledFuture<?> pending;
+    private long armedAlarmAt = -1;
+
+    // 统计
+    private long rebuildCount = 0;
+    private long firedCount = 0;
+    private long lastRebuildTime = 0;
+
+    // 最近创建的调度器（由服务持有），用于统计输出
+    private static volatile DeadlineAlertScheduler current;
+
+    public DeadlineAlertScheduler(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        current = this;
+    }
+
+    /**
+     * 按未完成任务重建全部触发点，已经到点的提醒立即触发
+     * @param openTasks 当前用户有截止时间的未完成任务
+     */
+    public void rebuild(java.util.List<SupabaseInterface.DetailedTask> openTasks) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            timers.clear();
+            for (SupabaseInterface.DetailedTask task : openTasks) {
+                if (task.completed) {
+                    continue;
+                }
+                long deadline = parseDeadline(task.deadline);
+                if (deadline <= 0) {
+                    continue;
+                }
+                if (deadline > now) {
+                    // 已在提醒窗口内的任务立即提醒一次
+                    add(Math.max(deadline - WARNING_WINDOW_MS, now), new Timer(task, false));
+                }
+                add(Math.max(deadline, now), new Timer(task, true));
+            }
+            rebuildCount++;
+            lastRebuildTime = now;
+            Log.d(TAG, "重建到期提醒定时器，任务数: " + openTasks.size() + ", 触发点: " + timers.size());
+        }
+        fireDue();
+    }
+
+    /**
+     * 停止进程内的定时（已注册的闹钟保留，到点时由服务重新加载）
+     */
+    public synchronized void stop() {
+        timers.clear();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * 触发所有已到点的提醒，并为下一个触发点安排定时
+     */
+    public void fireDue() {
+        java.util.List<SupabaseInterface.DetailedTask> dueSoon = new java.util.ArrayList<>();
+        java.util.List<SupabaseInterface.DetailedTask> overdue = new java.util.ArrayList<>();
+
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            while (!timers.isEmpty() && timers.firstKey() <= now) {
+                for (Timer timer : timers.pollFirstEntry().getValue()) {
+                    (timer.overdue ? overdue : dueSoon).add(timer.task);
+                }
+            }
+            firedCount += dueSoon.size() + overdue.size();
+            armNext(now);
+        }
+
+        if (dueSoon.isEmpty() && overdue.isEmpty()) {
+            return;
+        }
+        Log.d(TAG, "到期提醒触发 - 即将到期: " + dueSoon.size() + ", 逾期: " + overdue.size());
+        try {
+            listener.onDeadlineAlerts(dueSoon, overdue);
+        } catch (Exception e) {
+            Log.e(TAG, "处理到期提醒失败", e);
+        }
+    }
+
+    private void add(long fireAt, Timer timer) {
+        java.util.List<Timer> slot = timers.get(fireAt);
+        if (slot == null) {
+            slot = new java.util.ArrayList<>();
+            timers.put(fireAt, slot);
+        }
+        slot.add(timer);
+    }
+
+    private void armNext(long now) {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        if (timers.isEmpty()) {
+            cancelAlarm();
+            return;
+        }
+
+        long next = timers.firstKey();
+        pending = executors.scheduler().schedule(() -> executors.sync().execute(this::fireDue),
+                Math.max(0, next - now), TimeUnit.MILLISECONDS);
+
+        if (next != armedAlarmAt) {
+            scheduleAlarm(next);
+        }
+    }
+
+    private void scheduleAlarm(long triggerAtMillis) {
+        try {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            if (alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, createPendingIntent());
+            } else {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, createPendingIntent());
+            }
+            armedAlarmAt = triggerAtMillis;
+        } catch (Exception e) {
+            Log.e(TAG, "设置到期提醒闹钟失败", e);
+        }
+    }
+
+    private void cancelAlarm() {
+        try {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.cancel(createPendingIntent());
+            armedAlarmAt = -1;
+        } catch (Exception e) {
+            Log.e(TAG, "取消到期提醒闹钟失败", e);
+        }
+    }
+
+    private PendingIntent createPendingIntent() {
+        Intent intent = new Intent(context, ReportAlarmReceiver.class);
+        intent.setAction(ReportScheduler.ACTION_REPORT_ALARM);
+        intent.putExtra(ReportScheduler.EXTRA_REPORT_TYPE, ReportScheduler.TYPE_DEADLINE_ALERT);
+        return PendingIntent.getBroadcast(
+            context,
+            ALARM_REQUEST_CODE,
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+
+    /**
+     * 截止时间按本地时间解析（与本地副本的deadline_key一致），无法解析时返回-1
+     */
+    private static long parseDeadline(String deadline) {
+        String key = DatabaseHelper.toTimestampKey(deadline);
+        if (key == null) {
+            return -1;
+        }
+        try {
+            java.text.SimpleDateFormat format =
+                new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", java.util.Locale.getDefault());
+            return format.parse(key).getTime();
+        } catch (Exception e) {
+            Log.w(TAG, "无法解析截止时间: " + deadline);
+            return -1;
+        }
+    }
+
+    public synchronized JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("pendingTimers", timers.size());
+            stats.put("nextFireTime", timers.isEmpty() ? 0 : timers.firstKey());
+            stats.put("rebuildCount", rebuildCount);
+            stats.put("firedCount", firedCount);
+            stats.put("lastRebuildTime", lastRebuildTime);
+        } catch (JSONException e) {
+            Log.e(TAG, "生成到期提醒统计失败", e);
+        }
+        return stats;
+    }
+
+    /**
+     * 当前调度器的统计，服务未启动时返回空对象
+     */
+    public static JSONObject getCurrentStats() {
+        DeadlineAlertScheduler scheduler = current;
+        return scheduler != null ? scheduler.getStats() : new JSONObject();
+    }
+}
@@ -196,19 +196,9 @@ public class MainActivity extends AppCompatActivity {
             // 使用SupabaseInterface来触发每日待办任务生成，传入WebView引用以便刷新任务列表
             SupabaseInterface supabaseInterface = new SupabaseInterface(this, webView);
 
-            // 在后台线程执行任务生成，使用静默模式（不显示Toast）
-            new Thread(() -> {
-                try {
-                    // 调用triggerDailyTodoGenerationInternal方法，传入false表示不显示Toast
-                    supabaseInterface.triggerDailyTodoGenerationInternal(false);
-                    Log.d("MainActivity", "每日待办任务生成触发成功（应用启动时）");
-                } catch (Exception e) {
-                    Log.e("MainActivity", "触发每日待办任务生成失败", e);
-                } finally {
-                    // 注意：不要在这里立即销毁，因为triggerDailyTodoGenerationInternal内部使用了executorService
-                    // supabaseInterface.destroy();
-                }
-            }).start();
+            // 任务生成在共享线程池的同步通道中执行，使用静默模式（不显示Toast）
+            supabaseInterface.triggerDailyTodoGenerationInternal(false);
+            Log.d("MainActivity", "每日待办任务生成触发成功（应用启动时）");
 
         } catch (Exception e) {
             Log.e("MainActivity", "检查并生成每日待办任务失败", e);
@@ -233,22 +223,15 @@ public class MainActivity extends AppCompatActivity {
     // 标记消息为已读
     private void markMessageAsRead(long messageId) {
         try {
-            // 直接使用SupabaseInterface标记消息为已读
-            SupabaseInterface supabaseInterface = new SupabaseInterface(this);
-
-            // 异步标记消息为已读
-            supabaseInterface.markMessageAsReadAsync(messageId).thenAccept(success -> {
+            // 进入已读回执合并队列，无需为每次点击创建SupabaseInterface
+            ReadReceiptQueue.getInstance(this).enqueue(messageId).thenAccept(success -> {
                 if (success) {
                     Log.d("MainActivity", "消息已标记为已读: " + messageId);
                 } else {
                     Log.w("MainActivity", "标记消息为已读失败: " + messageId);
                 }
-                // 在异步操作完成后释放资源
-                supabaseInterface.destroy();
             }).exceptionally(throwable -> {
                 Log.e("MainActivity", "标记消息为已读异常: " + messageId, throwable);
-                // 发生异常时也要释放资源
-                supabaseInterface.destroy();
                 return null;
             });
 
@@ -400,6 +383,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        // 应用在前台时后台轮询使用最短间隔
+        AdaptivePollScheduler.setAppForeground(true);
         // 确保WebView在应用恢复时正常工作
         if (webView != null) {
             webView.onResume();
@@ -416,6 +401,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
+        AdaptivePollScheduler.setAppForeground(false);
         if (webView != null) {
             webView.onPause();
         }
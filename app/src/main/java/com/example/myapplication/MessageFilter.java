@@ -0,0 +1,174 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * 用户消息接收设置的编译结果（不可变）
+ * 由UserSettings编译一次：发送人黑白名单转为哈希集合，接收的消息类型转为位掩码，工作时间转为当天的分钟数，
+ * 过滤一条消息不需要查库或解析JSON。由DatabaseHelper按用户缓存，设置保存时失效
+ */
+public final class MessageFilter {
+
+    private static final String TAG = "MessageFilter";
+
+    // 默认工作时间（与user_settings表的默认值一致）
+    private static final int DEFAULT_WORK_START_MINUTE = 9 * 60;
+    private static final int DEFAULT_WORK_END_MINUTE = 18 * 60;
+
+    /**
+     * 可按设置开关的消息类型，其他类型总是接收
+     */
+    public enum MessageType {
+        TASK_COMPLETE("task_complete"),
+        TASK_ASSIGNED("task_assigned"),
+        SYSTEM("system"),
+        OTHER(null);
+
+        private final String value;
+
+        MessageType(String value) {
+            this.value = value;
+        }
+
+        int bit() {
+            return 1 << ordinal();
+        }
+
+        public static MessageType of(String value) {
+            if (value != null) {
+                for (MessageType type : values()) {
+                    if (value.equals(type.value)) {
+                        return type;
+                    }
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    // 没有设置的用户接收所有消息
+    public static final MessageFilter ACCEPT_ALL = new MessageFilter(
+            allTypesMask(), null, null, DEFAULT_WORK_START_MINUTE, DEFAULT_WORK_END_MINUTE, true);
+
+    private final int acceptedTypes;
+    private final java.util.Set<String> blockedSenders;
+    // 为null时不限制发送人；设置了空白名单时不接收任何发送人的消息
+    private final java.util.Set<String> allowedSenders;
+    private final int workStartMinute;
+    private final int workEndMinute;
+    private final boolean receiveOutsideWorkHours;
+
+    private MessageFilter(int acceptedTypes, java.util.Set<String> blockedSenders, java.util.Set<String> allowedSenders,
+                          int workStartMinute, int workEndMinute, boolean receiveOutsideWorkHours) {
+        this.acceptedTypes = acceptedTypes;
+        this.blockedSenders = blockedSenders;
+        this.allowedSenders = allowedSenders;
+        this.workStartMinute = workStartMinute;
+        this.workEndMinute = workEndMinute;
+        this.receiveOutsideWorkHours = receiveOutsideWorkHours;
+    }
+
+    public static MessageFilter compile(DatabaseHelper.UserSettings settings) {
+        if (settings == null) {
+            return ACCEPT_ALL;
+        }
+
+        int types = MessageType.OTHER.bit();
+        if (settings.isReceiveTaskComplete()) types |= MessageType.TASK_COMPLETE.bit();
+        if (settings.isReceiveTaskAssigned()) types |= MessageType.TASK_ASSIGNED.bit();
+        if (settings.isReceiveSystemMessages()) types |= MessageType.SYSTEM.bit();
+
+        return new MessageFilter(
+            types,
+            parseSenders(settings.getBlockedSenders(), "blocked"),
+            parseSenders(settings.getAllowedSenders(), "allowed"),
+            parseMinutes(settings.getWorkStartTime(), DEFAULT_WORK_START_MINUTE),
+            parseMinutes(settings.getWorkEndTime(), DEFAULT_WORK_END_MINUTE),
+            settings.isReceiveOutsideWorkHours()
+        );
+    }
+
+    /**
+     * 判断是否接收该消息：类型开关、发送人黑名单、发送人白名单
+     */
+    public boolean accepts(String senderId, String messageType) {
+        if ((acceptedTypes & MessageType.of(messageType).bit()) == 0) {
+            return false;
+        }
+        if (blockedSenders != null && blockedSenders.contains(senderId)) {
+            return false;
+        }
+        if (allowedSenders != null && !allowedSenders.contains(senderId)) {
+            return false;
+        }
+        // 工作时间暂不参与过滤（与原有逻辑一致），需要时使用isWithinWorkHours
+        return true;
+    }
+
+    /**
+     * 指定时刻是否在工作时间内（结束时间早于开始时间时按跨零点处理）
+     * @param minuteOfDay 当天的分钟数 0-1439
+     */
+    public boolean isWithinWorkHours(int minuteOfDay) {
+        if (workStartMinute <= workEndMinute) {
+            return minuteOfDay >= workStartMinute && minuteOfDay < workEndMinute;
+        }
+        return minuteOfDay >= workStartMinute || minuteOfDay < workEndMinute;
+    }
+
+    public boolean isReceiveOutsideWorkHours() {
+        return receiveOutsideWorkHours;
+    }
+
+    private static int allTypesMask() {
+        int mask = 0;
+        for (MessageType type : MessageType.values()) {
+            mask |= type.bit();
+        }
+        return mask;
+    }
+
+    /**
+     * 解析JSON数组形式的发送人列表，未设置或格式错误时返回null（不过滤）
+     */
+    private static java.util.Set<String> parseSenders(String json, String name) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            JSONArray array = new JSONArray(json);
+            java.util.HashSet<String> senders = new java.util.HashSet<>();
+            for (int i = 0; i < array.length(); i++) {
+                senders.add(array.getString(i));
+            }
+            return java.util.Collections.unmodifiableSet(senders);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error parsing " + name + " senders", e);
+            return null;
+        }
+    }
+
+    /**
+     * 解析 HH:mm 为当天的分钟数，格式错误时使用默认值
+     */
+    private static int parseMinutes(String time, int defaultMinutes) {
+        if (time == null || time.isEmpty()) {
+            return defaultMinutes;
+        }
+        try {
+            String[] parts = time.split(":");
+            int hour = Integer.parseInt(parts[0].trim());
+            int minute = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 0;
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                return defaultMinutes;
+            }
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "无法解析工作时间: " + time);
+            return defaultMinutes;
+        }
+    }
+}
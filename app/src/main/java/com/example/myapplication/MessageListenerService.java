@@ -14,32 +14,63 @@ import android.os.Looper;
 import android.util.Log;
 import androidx.annotation.Nullable;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class MessageListenerService extends Service {
 
     private static final String TAG = "MessageListenerService";
     private NotificationHelper notificationHelper;
     private SupabaseInterface supabaseInterface;
-    private Timer messageTimer;
-    private Timer keepAliveTimer; // 额外的保活定时器
+    private final SupabaseHttpClient httpClient = SupabaseHttpClient.getInstance();
+    private AdaptivePollScheduler messagePoller; // 消息轮询，只在Realtime订阅不可用时运行
+    private AdaptivePollScheduler keepAlivePoller; // 额外的保活心跳
+    private RealtimeClient realtimeClient;
+    private String realtimeConfigKey; // 当前订阅对应的 URL|Key|用户ID
+    private final java.util.concurrent.atomic.AtomicBoolean pushCheckScheduled =
+            new java.util.concurrent.atomic.AtomicBoolean(false);
     private Handler mainHandler;
 
     // 当前用户ID (从SharedPreferences获取)
-    private String currentUserId = null;
-
-    // 已显示的消息ID集合，避免重复通知
-    private Set<Long> displayedMessageIds = new HashSet<>();
-
-    // 用于跟踪已发送的定时通知
-    private String lastMorningReportDate = "";
-    private String lastEveningReportDate = "";
-    private Set<String> sentDeadlineWarnings = new HashSet<>();
-    private Set<String> sentOverdueWarnings = new HashSet<>();
+    private volatile String currentUserId = null;
+
+    // 同名后台任务单飞执行，网络慢时不会堆积相同的请求（同一名称只对应同一种任务，补跑时执行的是正在运行的那份）
+    private static final String JOB_MESSAGE_CHECK = "message-check";
+    private static final String JOB_TASK_REMINDERS = "task-reminders";
+    private static final String JOB_DAILY_TODO = "daily-todo";
+    private static final String JOB_DEADLINE_REBUILD = "deadline-rebuild";
+    private final SingleFlightRunner jobs = SingleFlightRunner.getInstance();
+
+    // 消息游标：只拉取id大于水位的未读消息，水位和上次成功轮询时间按用户持久化在sync_state表
+    private static final int MESSAGE_PAGE_SIZE = 100;
+    // messages.id由所有用户和系统写入方共享，晚提交的事务可见时id可能远低于水位；
+    // 因此每次还会重新查询上次成功轮询前这段时间内创建的未读消息，重复的由notificationLedger过滤
+    private static final long MESSAGE_CURSOR_OVERLAP_MS = 5 * 60 * 1000L;
+    private DatabaseHelper localDb;
+    private String messageCursorKey;
+    private long lastSeenMessageId = -1; // -1表示该用户还没有水位，先全量拉取一次
+    private long lastMessagePollTime = 0; // 上次成功轮询的时间，0表示未知
+    // Realtime推送过来的消息id，下次检查时显式查询（其id可能低于水位）
+    private final java.util.Set<Long> pushedMessageIds = java.util.concurrent.ConcurrentHashMap.newKeySet();
+
+    // 已显示的消息ID和已发送的提醒（持久化，服务重启后不会重复通知）
+    private NotificationLedger notificationLedger;
+
+    // 晨报晚报和每日待办按配置时间注册精确闹钟，不再由心跳每分钟判断
+    private static final String JOB_MORNING_REPORT = "morning-report";
+    private static final String JOB_EVENING_REPORT = "evening-report";
+    private static final String JOB_REPORT_CATCH_UP = "report-catch-up";
+    private ReportScheduler reportScheduler;
+
+    // 已发送报告的日期持久化在sync_state表，服务重启后不会重复发送
+    private static final String STATE_MORNING_REPORT_DATE = "reports.morning.last_date";
+    private static final String STATE_EVENING_REPORT_DATE = "reports.evening.last_date";
+    // 到期和逾期提醒由本地定时器在截止前24小时和截止时间触发，任务变化时重建
+    private DeadlineAlertScheduler deadlineAlerts;
+    private final TaskSyncManager.Listener tasksChangedListener = () ->
+        jobs.submit(JOB_DEADLINE_REBUILD, AppExecutors.getInstance().sync(), this::rebuildDeadlineAlerts);
+
+    // 今天的每日待办是否已处理完成，未完成（例如离线）时心跳继续重试
+    private volatile String dailyTodoDoneDate = "";
 
     // 新消息广播接收器
     private BroadcastReceiver newMessageReceiver = new BroadcastReceiver() {
@@ -48,29 +79,90 @@ public class MessageListenerService extends Service {
             String action = intent.getAction();
             if ("com.example.myapplication.NEW_MESSAGE".equals(action)) {
                 Log.d(TAG, "收到新消息广播，立即检查消息");
-                // 立即检查消息，不等待定时器
-                checkDatabaseMessages();
+                // 立即检查消息，不等待定时器，并把轮询间隔恢复为最短
+                jobs.submit(JOB_MESSAGE_CHECK, AppExecutors.getInstance().sync(), () -> fetchAndShowMessages());
+                resetMessagePolling();
             } else if ("com.example.myapplication.TRIGGER_REMINDERS".equals(action)) {
                 Log.d(TAG, "收到手动触发任务提醒广播");
                 // 立即检查任务提醒
-                triggerTaskReminders();
+                jobs.submit("trigger-reminders", AppExecutors.getInstance().sync(), () -> triggerTaskReminders());
             } else if ("com.example.myapplication.TRIGGER_EVENING_REPORT".equals(action)) {
                 Log.d(TAG, "收到手动触发晚报广播");
                 // 立即发送晚报
-                triggerEveningReport();
+                jobs.submit("trigger-evening-report", AppExecutors.getInstance().sync(), () -> triggerEveningReport());
             } else if ("com.example.myapplication.TRIGGER_MORNING_REPORT".equals(action)) {
                 Log.d(TAG, "收到手动触发晨报广播");
                 // 立即发送晨报
-                triggerMorningReport();
+                jobs.submit("trigger-morning-report", AppExecutors.getInstance().sync(), () -> triggerMorningReport());
             } else if ("com.example.myapplication.TRIGGER_ALL_REPORTS".equals(action)) {
                 Log.d(TAG, "收到手动触发所有报告广播");
                 // 立即检查并发送所有报告
-                triggerAllReports();
+                jobs.submit("trigger-all-reports", AppExecutors.getInstance().sync(), () -> triggerAllReports());
             } else if ("com.example.myapplication.TRIGGER_DAILY_TODO".equals(action)) {
                 Log.d(TAG, "收到手动触发每日待办任务生成广播");
                 // 立即生成每日待办任务
-                triggerDailyTodoGeneration();
+                jobs.submit("trigger-daily-todo", AppExecutors.getInstance().sync(), () -> triggerDailyTodoGeneration());
+            }
+        }
+    };
+
+    // 亮屏时恢复最短轮询间隔；熄屏和doze由调度器在下次计算间隔时自行放宽
+    private final BroadcastReceiver screenStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_SCREEN_ON.equals(intent.getAction())) {
+                Log.d(TAG, "屏幕点亮，恢复最短轮询间隔");
+                AdaptivePollScheduler.onDeviceInteractive();
+            }
+        }
+    };
+
+    // 配置变化时同步当前用户ID，不必在每次轮询时重新读取
+    private final AppSettings.Listener settingsListener = (oldSettings, newSettings) -> {
+        String userId = newSettings.currentUserId;
+        if (userId != null && !userId.isEmpty() && !userId.equals(currentUserId)) {
+            currentUserId = userId;
+            Log.d(TAG, "配置变化，当前用户ID更新为: " + currentUserId);
+            jobs.submit(JOB_DEADLINE_REBUILD, AppExecutors.getInstance().sync(), this::rebuildDeadlineAlerts);
+        }
+        // 用户或连接配置变化后按新的receiver_id重新订阅（关闭旧连接不放在主线程）
+        AppExecutors.getInstance().sync().execute(this::startRealtimeSubscription);
+
+        // 报告时间变化后重新注册闹钟；新时间今天已过且未发送时立即补发
+        if (oldSettings == null
+                || !newSettings.morningNotifyTime.equals(oldSettings.morningNotifyTime)
+                || !newSettings.eveningNotifyTime.equals(oldSettings.eveningNotifyTime)) {
+            if (reportScheduler != null) {
+                reportScheduler.scheduleAll();
+            }
+            jobs.submit(JOB_REPORT_CATCH_UP, AppExecutors.getInstance().sync(), this::catchUpScheduledReports);
+        }
+    };
+
+    // Realtime订阅回调：订阅成功后停止轮询，收到新消息时立即检查，断开时回退到轮询
+    private final RealtimeClient.Listener realtimeListener = new RealtimeClient.Listener() {
+        @Override
+        public void onSubscribed() {
+            Log.d(TAG, "Realtime订阅成功，停止消息轮询");
+            stopMessagePolling();
+            // 补查订阅建立前可能错过的消息
+            scheduleMessageCheck();
+        }
+
+        @Override
+        public void onInsert(org.json.JSONObject record) {
+            long id = record.optLong("id");
+            Log.d(TAG, "收到Realtime新消息推送: " + id);
+            if (id > 0) {
+                pushedMessageIds.add(id);
             }
+            scheduleMessageCheck();
+        }
+
+        @Override
+        public void onDisconnected(Exception cause) {
+            Log.w(TAG, "Realtime连接断开，回退到消息轮询");
+            startMessagePolling();
         }
     };
 
@@ -80,11 +172,14 @@ public class MessageListenerService extends Service {
         Log.d(TAG, "MessageListenerService 创建");
 
         notificationHelper = new NotificationHelper(this);
+        localDb = DatabaseHelper.getInstance(this);
+        notificationLedger = NotificationLedger.getInstance(this);
         supabaseInterface = new SupabaseInterface(this);
         mainHandler = new Handler(Looper.getMainLooper());
 
-        // 获取当前用户ID
+        // 获取当前用户ID，并订阅后续配置变化
         getCurrentUserIdFromPreferences();
+        AppSettings.addListener(settingsListener);
 
         // 注册新消息广播接收器
         IntentFilter filter = new IntentFilter();
@@ -96,11 +191,26 @@ public class MessageListenerService extends Service {
         filter.addAction("com.example.myapplication.TRIGGER_DAILY_TODO");
         registerNewMessageReceiver(filter);
 
+        // 屏幕状态广播只能动态注册
+        try {
+            registerReceiver(screenStateReceiver, new IntentFilter(Intent.ACTION_SCREEN_ON), Context.RECEIVER_NOT_EXPORTED);
+        } catch (Exception e) {
+            Log.e(TAG, "注册屏幕状态接收器失败", e);
+        }
+
         // 启动前台服务通知
         startForegroundNotification();
 
         // 设置服务保活机制
         setupKeepAlive();
+
+        // 注册晨报、晚报和每日待办的定时闹钟（开机后闹钟会被清除，服务启动时重新注册）
+        reportScheduler = new ReportScheduler(this);
+        reportScheduler.scheduleAll();
+
+        deadlineAlerts = new DeadlineAlertScheduler(this, this::onDeadlineAlerts);
+        TaskSyncManager.getInstance(this).addListener(tasksChangedListener);
+        jobs.submit(JOB_DEADLINE_REBUILD, AppExecutors.getInstance().sync(), this::rebuildDeadlineAlerts);
     }
 
     /**
@@ -147,6 +257,13 @@ public class MessageListenerService extends Service {
         startMessageListening();
         startKeepAliveTimer();
 
+        if (intent != null && ReportScheduler.ACTION_REPORT_ALARM.equals(intent.getAction())) {
+            handleReportAlarm(intent.getStringExtra(ReportScheduler.EXTRA_REPORT_TYPE));
+        } else {
+            // 服务（重新）启动时补发今天已过时间但还没发送的报告
+            jobs.submit(JOB_REPORT_CATCH_UP, AppExecutors.getInstance().sync(), this::catchUpScheduledReports);
+        }
+
         // 返回 START_STICKY 确保服务被系统杀死后会重启
         return START_STICKY;
     }
@@ -196,34 +313,90 @@ public class MessageListenerService extends Service {
         startForeground(1000, builder.build());
     }
 
+    /**
+     * 开始监听新消息
+     * 优先使用Realtime订阅；订阅建立前和连接断开期间使用3秒轮询兜底
+     */
     private void startMessageListening() {
-        if (messageTimer != null) {
-            messageTimer.cancel();
+        startRealtimeSubscription();
+        if (realtimeClient == null || !realtimeClient.isSubscribed()) {
+            startMessagePolling();
         }
+    }
+
+    private synchronized void startMessagePolling() {
+        if (messagePoller == null) {
+            // 有新消息或应用在前台时3秒一次，空闲时逐步放宽到30秒（熄屏/doze时更长）
+            messagePoller = new AdaptivePollScheduler(this, "message-poll", 3000, 30000,
+                    this::checkDatabaseMessages);
+        }
+        messagePoller.start(1000);
+    }
+
+    private synchronized void stopMessagePolling() {
+        if (messagePoller != null) {
+            messagePoller.stop();
+        }
+    }
+
+    private synchronized void resetMessagePolling() {
+        if (messagePoller != null) {
+            messagePoller.reset();
+        }
+    }
 
-        messageTimer = new Timer();
-        messageTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                // 只检查数据库中的未读消息（不再模拟消息）
+    /**
+     * 按当前配置订阅发给当前用户的messages插入；配置未变化且订阅仍在运行时不重复连接
+     */
+    private synchronized void startRealtimeSubscription() {
+        AppSettings settings = AppSettings.get(this);
+        String userId = currentUserId;
+        if (!settings.hasSupabaseConfig() || userId == null || userId.isEmpty()) {
+            return;
+        }
+
+        String configKey = settings.supabaseUrl + "|" + settings.supabaseAnonKey + "|" + userId;
+        if (realtimeClient != null && configKey.equals(realtimeConfigKey)) {
+            return;
+        }
+
+        stopRealtimeSubscription();
+        realtimeConfigKey = configKey;
+        realtimeClient = new RealtimeClient(settings.supabaseUrl, settings.supabaseAnonKey,
+                "messages", "receiver_id=eq." + userId, realtimeListener);
+        realtimeClient.start();
+        Log.d(TAG, "开始Realtime订阅，用户: " + userId);
+    }
+
+    private synchronized void stopRealtimeSubscription() {
+        if (realtimeClient != null) {
+            realtimeClient.stop();
+            realtimeClient = null;
+            realtimeConfigKey = null;
+        }
+    }
+
+    /**
+     * 推送触发的消息检查，短时间内的多条推送合并为一次查询
+     */
+    private void scheduleMessageCheck() {
+        if (pushCheckScheduled.compareAndSet(false, true)) {
+            AppExecutors executors = AppExecutors.getInstance();
+            executors.scheduler().schedule(() -> executors.sync().execute(() -> {
+                pushCheckScheduled.set(false);
                 checkDatabaseMessages();
-            }
-        }, 1000, 3000); // 1秒后开始，每3秒检查一次（更频繁）
+            }), 300, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
      * 启动额外的保活定时器
      * 定期发送心跳信号，确保服务保持活跃状态
      */
-    private void startKeepAliveTimer() {
-        if (keepAliveTimer != null) {
-            keepAliveTimer.cancel();
-        }
-
-        keepAliveTimer = new Timer();
-        keepAliveTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
+    private synchronized void startKeepAliveTimer() {
+        if (keepAlivePoller == null) {
+            // 亮屏时每1分钟一次；熄屏/doze时按设备状态放宽（晨报晚报由精确闹钟触发，不受心跳间隔影响）
+            keepAlivePoller = new AdaptivePollScheduler(this, "keep-alive", 60000, 60000, () -> {
                 // 发送心跳信号和重新设置保活机制
                 Log.d(TAG, "服务心跳检查 - 保持活跃状态");
 
@@ -235,8 +408,10 @@ public class MessageListenerService extends Service {
 
                 // 检查是否需要发送定时提醒和生成每日任务
                 checkScheduledNotifications();
-            }
-        }, 10000, 60000); // 10秒后开始，每1分钟执行一次心跳和检查
+                return false;
+            });
+        }
+        keepAlivePoller.start(10000); // 10秒后开始
     }
 
     /**
@@ -253,80 +428,143 @@ public class MessageListenerService extends Service {
     }
 
     /**
-     * 检查并发送定时通知（晨报、晚报、任务提醒）
+     * 心跳中的定时检查：增量同步任务，以及今天尚未完成的每日待办生成
+     * 到期和逾期提醒由DeadlineAlertScheduler按截止时间触发，不在心跳中查询
+     * 晨报晚报由ReportScheduler的闹钟在配置时间触发，见handleReportAlarm
      */
     private void checkScheduledNotifications() {
         try {
-            java.util.Calendar calendar = java.util.Calendar.getInstance();
-            int hour = calendar.get(java.util.Calendar.HOUR_OF_DAY);
-            int minute = calendar.get(java.util.Calendar.MINUTE);
-
             String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
                 .format(new java.util.Date());
 
-            Log.d(TAG, "检查定时通知 - 当前时间: " + hour + ":" + minute + ", 日期: " + today);
-
-            // 获取晨报晚报时间配置
-            ReportTimeConfig timeConfig = getReportTimeConfig();
+            // 增量同步任务到本地副本（只拉取上次同步之后变化的任务）；有变化时通过tasksChangedListener重建到期提醒定时器
+            TaskSyncManager.getInstance(this).sync();
 
-            // 检查晨报 - 修复过了晨报时间不发送的问题
-            // 1. 在晨报时间的5分钟内正常发送
-            // 2. 如果已过晨报时间且当天还没发送过，则补发晨报
-            boolean shouldSendMorningReport = false;
-            String morningReportReason = "";
-
-            if (isTimeInRange(hour, minute, timeConfig.morningHour, timeConfig.morningMinute, 5)
-                && !lastMorningReportDate.equals(today)) {
-                shouldSendMorningReport = true;
-                morningReportReason = "正常时间发送";
-            } else if (isAfterMorningTime(hour, minute, timeConfig.morningHour, timeConfig.morningMinute)
-                && !lastMorningReportDate.equals(today)
-                && isSuitableForMorningReportResend(hour, timeConfig.morningHour)) {
-                shouldSendMorningReport = true;
-                morningReportReason = "智能补发";
+            // 每日待办由零点后的闹钟生成；失败（例如离线）时由心跳重试，完成后当天不再检查
+            if (!today.equals(dailyTodoDoneDate)) {
+                jobs.run(JOB_DAILY_TODO, () -> {
+                    if (checkAndGenerateDailyTodos(today)) {
+                        dailyTodoDoneDate = today;
+                    }
+                });
             }
 
-            if (shouldSendMorningReport) {
-                sendMorningReport(today);
-                lastMorningReportDate = today;
-                Log.d(TAG, "已发送晨报: " + today + " (配置时间: " + timeConfig.morningHour + ":" + timeConfig.morningMinute + ", 发送原因: " + morningReportReason + ")");
-            }
+            // 晨报晚报发送失败（例如离线）时由心跳重试，已记录发送日期的当天直接跳过
+            catchUpScheduledReports();
+
+        } catch (Exception e) {
+            Log.e(TAG, "检查定时通知失败", e);
+        }
+    }
 
-            // 检查晚报 - 修复过了晚报时间不发送的问题
-            // 1. 在晚报时间的5分钟内正常发送
-            // 2. 如果已过晚报时间且当天还没发送过，则补发晚报
-            boolean shouldSendEveningReport = false;
-            String eveningReportReason = "";
-
-            if (isTimeInRange(hour, minute, timeConfig.eveningHour, timeConfig.eveningMinute, 5)
-                && !lastEveningReportDate.equals(today)) {
-                shouldSendEveningReport = true;
-                eveningReportReason = "正常时间发送";
-            } else if (isAfterEveningTime(hour, minute, timeConfig.eveningHour, timeConfig.eveningMinute)
-                && !lastEveningReportDate.equals(today)) {
-                shouldSendEveningReport = true;
-                eveningReportReason = "过时补发";
+    /**
+     * 处理ReportScheduler的定时闹钟
+     */
+    private void handleReportAlarm(String type) {
+        Log.d(TAG, "定时任务到点: " + type);
+        AppExecutors.getInstance().sync().execute(() -> {
+            String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
+                .format(new java.util.Date());
+            if (ReportScheduler.TYPE_MORNING_REPORT.equals(type)) {
+                jobs.run(JOB_MORNING_REPORT, () -> sendScheduledReport(STATE_MORNING_REPORT_DATE, today, "定时发送"));
+            } else if (ReportScheduler.TYPE_EVENING_REPORT.equals(type)) {
+                jobs.run(JOB_EVENING_REPORT, () -> sendScheduledReport(STATE_EVENING_REPORT_DATE, today, "定时发送"));
+            } else if (ReportScheduler.TYPE_DAILY_TODO.equals(type)) {
+                jobs.run(JOB_DAILY_TODO, () -> {
+                    if (checkAndGenerateDailyTodos(today)) {
+                        dailyTodoDoneDate = today;
+                    }
+                });
+                // 日期切换后重建定时器，仍未完成的逾期任务每天提醒一次
+                jobs.run(JOB_DEADLINE_REBUILD, this::rebuildDeadlineAlerts);
+            } else if (ReportScheduler.TYPE_DEADLINE_ALERT.equals(type)) {
+                deadlineAlerts.fireDue();
             }
+        });
+    }
 
-            if (shouldSendEveningReport) {
-                sendEveningReport(today);
-                lastEveningReportDate = today;
-                Log.d(TAG, "已发送晚报: " + today + " (配置时间: " + timeConfig.eveningHour + ":" + timeConfig.eveningMinute + ", 发送原因: " + eveningReportReason + ")");
+    /**
+     * 从本地任务副本重建到期提醒定时器
+     */
+    private void rebuildDeadlineAlerts() {
+        try {
+            if (currentUserId == null || currentUserId.isEmpty()) {
+                Log.w(TAG, "跳过重建到期提醒：用户ID为空");
+                return;
+            }
+            TaskSyncManager syncManager = TaskSyncManager.getInstance(this);
+            if (!syncManager.syncIfStale(30 * 1000)) {
+                Log.w(TAG, "本地任务副本不可用，暂不重建到期提醒");
+                return;
             }
+            deadlineAlerts.rebuild(syncManager.replica().getOpenTasksWithDeadline(currentUserId));
+        } catch (Exception e) {
+            Log.e(TAG, "重建到期提醒失败", e);
+        }
+    }
 
-            // 检查任务即将超时和逾期提醒（每15分钟检查一次，更频繁）
-//            if (minute % 2 == 0) {
-                checkTaskDeadlineWarnings(today, hour);
-                checkOverdueTasks(today, hour);
-                Log.d(TAG, "已执行任务超时检查 - " + hour + ":" + minute);
-//            }
+    /**
+     * 到期提醒定时器到点
+     */
+    private void onDeadlineAlerts(java.util.List<SupabaseInterface.DetailedTask> dueSoon,
+                                  java.util.List<SupabaseInterface.DetailedTask> overdue) {
+        String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
+            .format(new java.util.Date());
+        if (!dueSoon.isEmpty()) {
+            notifyDeadlineWarnings(today, SupabaseInterface.toTaskMessages(dueSoon));
+        }
+        if (!overdue.isEmpty()) {
+            notifyOverdueTasks(today, SupabaseInterface.toTaskMessages(overdue));
+        }
+    }
+
+    /**
+     * 补发今天已过配置时间但还没发送的报告（服务启动和报告时间修改时调用）
+     */
+    private void catchUpScheduledReports() {
+        try {
+            java.util.Calendar calendar = java.util.Calendar.getInstance();
+            int hour = calendar.get(java.util.Calendar.HOUR_OF_DAY);
+            int minute = calendar.get(java.util.Calendar.MINUTE);
+            String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
+                .format(new java.util.Date());
+
+            ReportTimeConfig timeConfig = getReportTimeConfig();
 
-            // 每分钟检查并生成每日待办任务（改为每次心跳检查都执行，内部会判断今天是否已生成）
-            checkAndGenerateDailyTodos(today);
+            if (isAfterMorningTime(hour, minute, timeConfig.morningHour, timeConfig.morningMinute)
+                && isSuitableForMorningReportResend(hour, timeConfig.morningHour)) {
+                jobs.run(JOB_MORNING_REPORT, () -> sendScheduledReport(STATE_MORNING_REPORT_DATE, today, "智能补发"));
+            }
 
+            if (isAfterEveningTime(hour, minute, timeConfig.eveningHour, timeConfig.eveningMinute)) {
+                jobs.run(JOB_EVENING_REPORT, () -> sendScheduledReport(STATE_EVENING_REPORT_DATE, today, "过时补发"));
+            }
         } catch (Exception e) {
-            Log.e(TAG, "检查定时通知失败", e);
+            Log.e(TAG, "补发定时报告失败", e);
+        }
+    }
+
+    /**
+     * 发送今天还没发送过的晨报或晚报
+     * 只有在数据获取成功并已发出通知后才记录发送日期，失败时由心跳或补发逻辑重试
+     * @param stateKey 记录发送日期的sync_state键，同时决定发送晨报还是晚报
+     */
+    private void sendScheduledReport(String stateKey, String today, String reason) {
+        if (today.equals(localDb.getSyncState(stateKey))) {
+            return;
+        }
+        // 报告在本地副本上查询，发送前先同步一次
+        TaskSyncManager.getInstance(this).sync();
+        boolean sent = STATE_MORNING_REPORT_DATE.equals(stateKey)
+            ? sendMorningReport(today)
+            : sendEveningReport(today);
+        if (!sent) {
+            Log.w(TAG, (STATE_MORNING_REPORT_DATE.equals(stateKey) ? "晨报" : "晚报") + "未发送，稍后重试: " + today);
+            return;
         }
+        localDb.setSyncState(stateKey, today);
+        Log.d(TAG, "已发送" + (STATE_MORNING_REPORT_DATE.equals(stateKey) ? "晨报" : "晚报") + ": " + today
+            + " (发送原因: " + reason + ")");
     }
 
     /**
@@ -334,9 +572,9 @@ public class MessageListenerService extends Service {
      */
     private ReportTimeConfig getReportTimeConfig() {
         try {
-            android.content.SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-            String morningTime = prefs.getString("morning_notify_time", "09:00");
-            String eveningTime = prefs.getString("evening_notify_time", "18:00");
+            AppSettings settings = AppSettings.get(this);
+            String morningTime = settings.morningNotifyTime;
+            String eveningTime = settings.eveningNotifyTime;
 
             ReportTimeConfig config = new ReportTimeConfig();
 
@@ -365,18 +603,6 @@ public class MessageListenerService extends Service {
         }
     }
 
-    /**
-     * 检查当前时间是否在指定时间范围内
-     */
-    private boolean isTimeInRange(int currentHour, int currentMinute, int targetHour, int targetMinute, int toleranceMinutes) {
-        // 将时间转换为分钟数便于比较
-        int currentTotalMinutes = currentHour * 60 + currentMinute;
-        int targetTotalMinutes = targetHour * 60 + targetMinute;
-        int maxTotalMinutes = targetTotalMinutes + toleranceMinutes;
-
-        return currentTotalMinutes >= targetTotalMinutes && currentTotalMinutes < maxTotalMinutes;
-    }
-
     /**
      * 检查是否已过晚报时间（用于晚报补发逻辑）
      * 如果当前时间已经过了设定的晚报时间，则返回true
@@ -421,18 +647,22 @@ public class MessageListenerService extends Service {
 
     /**
      * 发送晨报
+     * @return 是否获取到今日任务并发出了通知
      */
-    private void sendMorningReport(String date) {
+    private boolean sendMorningReport(String date) {
         try {
             if (currentUserId == null || currentUserId.isEmpty()) {
                 Log.w(TAG, "用户ID为空，跳过晨报发送");
-                return;
+                return false;
             }
 
             // 获取今日任务
-            String tasksJson = supabaseInterface.getTodayTasks(currentUserId);
             java.util.List<SupabaseInterface.SimpleMessage> todayTasks =
-                supabaseInterface.parseTasksAsMessages(tasksJson);
+                supabaseInterface.getTodayTaskMessages(currentUserId);
+            if (todayTasks == null) {
+                Log.w(TAG, "获取今日任务失败，跳过晨报发送");
+                return false;
+            }
 
             // 构建折叠和完整内容
             String summary;
@@ -472,34 +702,38 @@ public class MessageListenerService extends Service {
                 "morning_report"
             );
 
-            mainHandler.post(() -> {
-                notificationHelper.showExpandableNotification(morningMessage);
-            });
+            // 直接在当前线程发出通知（NotificationManager线程安全），失败时进入catch并返回false
+            notificationHelper.showExpandableNotification(morningMessage);
+            return true;
 
         } catch (Exception e) {
             Log.e(TAG, "发送晨报失败", e);
+            return false;
         }
     }
 
     /**
      * 发送晚报
+     * @return 是否获取到今日任务并发出了通知
      */
-    private void sendEveningReport(String date) {
+    private boolean sendEveningReport(String date) {
         try {
             if (currentUserId == null || currentUserId.isEmpty()) {
                 Log.w(TAG, "用户ID为空，跳过晚报发送");
-                return;
+                return false;
             }
 
             // 获取今日完成的任务
-            String completedTasksJson = supabaseInterface.getTodayCompletedTasks(currentUserId);
             java.util.List<SupabaseInterface.SimpleMessage> completedTasks =
-                supabaseInterface.parseTasksAsMessages(completedTasksJson);
+                supabaseInterface.getTodayCompletedTaskMessages(currentUserId);
 
             // 获取今日未完成的任务
-            String pendingTasksJson = supabaseInterface.getTodayPendingTasks(currentUserId);
             java.util.List<SupabaseInterface.SimpleMessage> pendingTasks =
-                supabaseInterface.parseTasksAsMessages(pendingTasksJson);
+                supabaseInterface.getTodayPendingTaskMessages(currentUserId);
+            if (completedTasks == null || pendingTasks == null) {
+                Log.w(TAG, "获取今日任务失败，跳过晚报发送");
+                return false;
+            }
 
             // 构建折叠和完整内容
             String summary;
@@ -561,12 +795,13 @@ public class MessageListenerService extends Service {
                 "evening_report"
             );
 
-            mainHandler.post(() -> {
-                notificationHelper.showExpandableNotification(eveningMessage);
-            });
+            // 直接在当前线程发出通知（NotificationManager线程安全），失败时进入catch并返回false
+            notificationHelper.showExpandableNotification(eveningMessage);
+            return true;
 
         } catch (Exception e) {
             Log.e(TAG, "发送晚报失败", e);
+            return false;
         }
     }
 
@@ -583,23 +818,30 @@ public class MessageListenerService extends Service {
             Log.d(TAG, "开始检查任务即将超时提醒，用户ID: " + currentUserId);
 
             // 获取即将到期的任务（24小时内）
-            String upcomingTasksJson = supabaseInterface.getUpcomingDeadlineTasks(currentUserId);
-            Log.d(TAG, "获取即将到期任务结果: " + upcomingTasksJson);
-
             java.util.List<SupabaseInterface.SimpleMessage> upcomingTasks =
-                supabaseInterface.parseTasksAsMessages(upcomingTasksJson);
+                supabaseInterface.getUpcomingDeadlineTaskMessages(currentUserId);
 
             Log.d(TAG, "解析后的即将到期任务数量: " + upcomingTasks.size());
+            notifyDeadlineWarnings(date, upcomingTasks);
 
+        } catch (Exception e) {
+            Log.e(TAG, "检查任务即将超时提醒失败", e);
+        }
+    }
+
+    /**
+     * 发送任务即将到期提醒（同一任务每天只提醒一次）
+     */
+    private void notifyDeadlineWarnings(String date, java.util.List<SupabaseInterface.SimpleMessage> upcomingTasks) {
+        try {
             // 收集需要提醒的任务
             java.util.List<SupabaseInterface.SimpleMessage> newDeadlineTasks = new java.util.ArrayList<>();
 
             for (SupabaseInterface.SimpleMessage task : upcomingTasks) {
-                String warningKey = date + "-" + task.id + "-deadline";
+                String warningKey = task.taskId + "-deadline";
 
                 // 避免重复发送同一天的同一任务提醒
-                if (!sentDeadlineWarnings.contains(warningKey)) {
-                    sentDeadlineWarnings.add(warningKey);
+                if (notificationLedger.markKey(date, warningKey)) {
                     newDeadlineTasks.add(task);
                     Log.d(TAG, "新增任务即将超时提醒: " + task.title);
 
@@ -611,7 +853,7 @@ public class MessageListenerService extends Service {
                         supabaseAnonKey != null && !supabaseAnonKey.isEmpty() &&
                         supabaseUserId != null && !supabaseUserId.isEmpty()) {
                         createTaskNotificationMessage(supabaseUrl, supabaseAnonKey, supabaseUserId,
-                            String.valueOf(task.id), task.title, "deadline_warning", task.assignee);
+                            task.taskId, task.title, "deadline_warning", task.assignee);
                     }
                 } else {
                     Log.d(TAG, "跳过重复提醒: " + task.title + " (key: " + warningKey + ")");
@@ -669,11 +911,8 @@ public class MessageListenerService extends Service {
                 Log.d(TAG, "发送任务即将超时提醒，任务数: " + newDeadlineTasks.size());
             }
 
-            // 清理过期的提醒记录（保留最近3天）
-            cleanupWarningSet(sentDeadlineWarnings, date);
-
         } catch (Exception e) {
-            Log.e(TAG, "检查任务即将超时提醒失败", e);
+            Log.e(TAG, "发送任务即将超时提醒失败", e);
         }
     }
 
@@ -690,24 +929,31 @@ public class MessageListenerService extends Service {
             Log.d(TAG, "开始检查逾期任务提醒，用户ID: " + currentUserId);
 
             // 获取逾期任务
-            String overdueTasksJson = supabaseInterface.getOverdueTasks(currentUserId);
-            Log.d(TAG, "获取逾期任务结果: " + overdueTasksJson);
-
             java.util.List<SupabaseInterface.SimpleMessage> overdueTasks =
-                supabaseInterface.parseTasksAsMessages(overdueTasksJson);
+                supabaseInterface.getOverdueTaskMessages(currentUserId);
 
             Log.d(TAG, "解析后的逾期任务数量: " + overdueTasks.size());
+            notifyOverdueTasks(date, overdueTasks);
+
+        } catch (Exception e) {
+            Log.e(TAG, "检查逾期任务提醒失败", e);
+        }
+    }
 
+    /**
+     * 发送逾期任务提醒（同一任务每天只提醒一次）
+     */
+    private void notifyOverdueTasks(String date, java.util.List<SupabaseInterface.SimpleMessage> overdueTasks) {
+        try {
             if (!overdueTasks.isEmpty()) {
                 // 收集新的逾期任务
                 java.util.List<SupabaseInterface.SimpleMessage> newOverdueTasks = new java.util.ArrayList<>();
 
                 for (SupabaseInterface.SimpleMessage task : overdueTasks) {
-                    String overdueKey = date + "-" + task.id + "-overdue";
+                    String overdueKey = task.taskId + "-overdue";
 
                     // 避免重复发送同一天的同一任务逾期提醒
-                    if (!sentOverdueWarnings.contains(overdueKey)) {
-                        sentOverdueWarnings.add(overdueKey);
+                    if (notificationLedger.markKey(date, overdueKey)) {
                         newOverdueTasks.add(task);
                         Log.d(TAG, "新增逾期任务提醒: " + task.title);
 
@@ -719,7 +965,7 @@ public class MessageListenerService extends Service {
                             supabaseAnonKey != null && !supabaseAnonKey.isEmpty() &&
                             supabaseUserId != null && !supabaseUserId.isEmpty()) {
                             createTaskNotificationMessage(supabaseUrl, supabaseAnonKey, supabaseUserId,
-                                String.valueOf(task.id), task.title, "overdue_warning", task.assignee);
+                                task.taskId, task.title, "overdue_warning", task.assignee);
                         }
                     } else {
                         Log.d(TAG, "跳过重复逾期提醒: " + task.title + " (key: " + overdueKey + ")");
@@ -782,69 +1028,50 @@ public class MessageListenerService extends Service {
                 Log.d(TAG, "当前无逾期任务");
             }
 
-            // 清理过期的提醒记录（保留最近3天）
-            cleanupWarningSet(sentOverdueWarnings, date);
-
         } catch (Exception e) {
-            Log.e(TAG, "检查逾期任务提醒失败", e);
+            Log.e(TAG, "发送逾期任务提醒失败", e);
         }
     }
 
     /**
-     * 清理提醒记录集合，保留最近几天的记录
+     * 检查未读消息并显示通知（单飞执行：上一轮还在进行时本次合并为结束后的补跑）
+     * @return 是否有新的消息通知（用于自适应轮询判断活跃程度）
      */
-    private void cleanupWarningSet(java.util.Set<String> warningSet, String currentDate) {
-        try {
-            if (warningSet.size() > 100) {
-                java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault());
-                java.util.Date current = sdf.parse(currentDate);
-                long threeDaysAgo = current.getTime() - (3 * 24 * 60 * 60 * 1000);
-
-                java.util.Iterator<String> iterator = warningSet.iterator();
-                while (iterator.hasNext()) {
-                    String key = iterator.next();
-                    try {
-                        String dateStr = key.split("-")[0];
-                        java.util.Date keyDate = sdf.parse(dateStr);
-                        if (keyDate.getTime() < threeDaysAgo) {
-                            iterator.remove();
-                        }
-                    } catch (Exception e) {
-                        // 如果解析失败，删除该记录
-                        iterator.remove();
-                    }
-                }
-
-                Log.d(TAG, "清理提醒记录，保留 " + warningSet.size() + " 条记录");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "清理提醒记录失败", e);
-        }
+    private boolean checkDatabaseMessages() {
+        return jobs.run(JOB_MESSAGE_CHECK, this::fetchAndShowMessages, false);
     }
 
-    private void checkDatabaseMessages() {
+    private boolean fetchAndShowMessages() {
+        boolean hasNewMessages = false;
         try {
             if (currentUserId == null || currentUserId.isEmpty()) {
                 Log.w(TAG, "当前用户ID为空，跳过消息检查");
-                return;
+                return false;
             }
 
-            // 检查任务通知消息
-            checkTaskNotificationMessages();
-
-            // 从Supabase获取未读消息
-            String messagesJson = supabaseInterface.getUnreadMessages(currentUserId);
-            List<SupabaseInterface.SimpleMessage> unreadMessages = supabaseInterface.parseMessages(messagesJson);
+            // 从Supabase获取水位之后的未读消息（一次请求同时包含系统通知消息和用户消息）
+            List<SupabaseInterface.SimpleMessage> unreadMessages = fetchNewUnreadMessages(currentUserId);
+            if (unreadMessages == null) {
+                Log.w(TAG, "获取未读消息失败，保留水位等待下次检查");
+                return false;
+            }
 
             Log.d(TAG, "检查到 " + unreadMessages.size() + " 条未读消息");
 
             for (SupabaseInterface.SimpleMessage message : unreadMessages) {
+                // 系统通知消息（任务到期/逾期提醒等）：显示任务通知并标记已读
+                if ("system".equals(message.senderId)) {
+                    if (showTaskNotificationMessage(message)) {
+                        hasNewMessages = true;
+                    }
+                    continue;
+                }
+
                 // 只显示发送人不是自己的消息（Supabase查询已经排除了自己发送的消息）
                 if (!currentUserId.equals(message.senderId)) {
-                    // 检查是否已经显示过此消息
-                    if (!displayedMessageIds.contains(message.id)) {
-                        // 记录已显示的消息ID
-                        displayedMessageIds.add(message.id);
+                    // 检查是否已经显示过此消息（同时记录已显示的消息ID）
+                    if (notificationLedger.markMessageShown(message.id)) {
+                        hasNewMessages = true;
 
                         // 在主线程中显示通知
                         mainHandler.post(() -> {
@@ -882,43 +1109,19 @@ public class MessageListenerService extends Service {
                     }
                 }
             }
-
-            // 定期清理已显示消息ID集合，避免内存泄漏
-            cleanupDisplayedMessageIds();
         } catch (Exception e) {
             Log.e(TAG, "检查Supabase消息时出错", e);
         }
-    }
-
-    // 清理已显示消息ID集合，保留最近1000条记录
-    private void cleanupDisplayedMessageIds() {
-        try {
-            if (displayedMessageIds.size() > 1000) {
-                // 清理一半的记录，保留最近的消息
-                Set<Long> newSet = new HashSet<>();
-                List<Long> sortedIds = new java.util.ArrayList<>(displayedMessageIds);
-                java.util.Collections.sort(sortedIds, java.util.Collections.reverseOrder());
-
-                // 保留最新的500条记录
-                for (int i = 0; i < Math.min(500, sortedIds.size()); i++) {
-                    newSet.add(sortedIds.get(i));
-                }
-
-                displayedMessageIds = newSet;
-                Log.d(TAG, "已清理显示消息ID集合，保留 " + displayedMessageIds.size() + " 条记录");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "清理显示消息ID失败", e);
-        }
+        return hasNewMessages;
     }
 
     // 从SharedPreferences获取当前用户ID（通过SupabaseInterface同步的）
     private void getCurrentUserIdFromPreferences() {
         try {
-            android.content.SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
+            AppSettings settings = AppSettings.get(this);
 
             // 从SupabaseInterface同步的用户ID获取
-            currentUserId = prefs.getString("current_user_id", null);
+            currentUserId = settings.currentUserIdOr(null);
 
             if (currentUserId == null || currentUserId.isEmpty()) {
                 // 如果没有设置，使用默认值（实际应用中应该提醒用户设置）
@@ -941,6 +1144,7 @@ public class MessageListenerService extends Service {
             // 保存到SharedPreferences
             android.content.SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
             prefs.edit().putString("current_user_id", userId).apply();
+            AppSettings.reload(this);
 
             Log.d(TAG, "用户ID已更新: " + currentUserId);
         }
@@ -956,8 +1160,10 @@ public class MessageListenerService extends Service {
             int hour = java.util.Calendar.getInstance().get(java.util.Calendar.HOUR_OF_DAY);
 
             Log.d(TAG, "手动触发任务提醒检查");
-            checkTaskDeadlineWarnings(today, hour);
-            checkOverdueTasks(today, hour);
+            jobs.run(JOB_TASK_REMINDERS, () -> {
+                checkTaskDeadlineWarnings(today, hour);
+                checkOverdueTasks(today, hour);
+            });
             Log.d(TAG, "手动任务提醒检查完成");
         } catch (Exception e) {
             Log.e(TAG, "手动触发任务提醒失败", e);
@@ -975,14 +1181,17 @@ public class MessageListenerService extends Service {
             Log.d(TAG, "手动触发晚报发送");
 
             // 检查是否今天已经发送过晚报
-            if (lastEveningReportDate.equals(today)) {
+            if (today.equals(localDb.getSyncState(STATE_EVENING_REPORT_DATE))) {
                 Log.d(TAG, "今日晚报已发送过，强制重新发送");
             }
 
             // 强制发送晚报（不管是否已发送过）
-            sendEveningReport(today);
-            lastEveningReportDate = today;
-            Log.d(TAG, "手动晚报发送完成: " + today);
+            if (sendEveningReport(today)) {
+                localDb.setSyncState(STATE_EVENING_REPORT_DATE, today);
+                Log.d(TAG, "手动晚报发送完成: " + today);
+            } else {
+                Log.w(TAG, "手动晚报发送失败: " + today);
+            }
         } catch (Exception e) {
             Log.e(TAG, "手动触发晚报失败", e);
         }
@@ -999,14 +1208,17 @@ public class MessageListenerService extends Service {
             Log.d(TAG, "手动触发晨报发送");
 
             // 检查是否今天已经发送过晨报
-            if (lastMorningReportDate.equals(today)) {
+            if (today.equals(localDb.getSyncState(STATE_MORNING_REPORT_DATE))) {
                 Log.d(TAG, "今日晨报已发送过，强制重新发送");
             }
 
             // 强制发送晨报（不管是否已发送过）
-            sendMorningReport(today);
-            lastMorningReportDate = today;
-            Log.d(TAG, "手动晨报发送完成: " + today);
+            if (sendMorningReport(today)) {
+                localDb.setSyncState(STATE_MORNING_REPORT_DATE, today);
+                Log.d(TAG, "手动晨报发送完成: " + today);
+            } else {
+                Log.w(TAG, "手动晨报发送失败: " + today);
+            }
         } catch (Exception e) {
             Log.e(TAG, "手动触发晨报失败", e);
         }
@@ -1023,23 +1235,15 @@ public class MessageListenerService extends Service {
 
             Log.d(TAG, "手动触发所有报告检查");
 
-            // 检查是否需要发送晨报
-            if (!lastMorningReportDate.equals(today)) {
-                Log.d(TAG, "检测到今日晨报未发送，补发晨报");
-                sendMorningReport(today);
-                lastMorningReportDate = today;
-            }
-
-            // 检查是否需要发送晚报
-            if (!lastEveningReportDate.equals(today)) {
-                Log.d(TAG, "检测到今日晚报未发送，补发晚报");
-                sendEveningReport(today);
-                lastEveningReportDate = today;
-            }
+            // 检查是否需要发送晨报和晚报（今天已发送的会跳过）
+            jobs.run(JOB_MORNING_REPORT, () -> sendScheduledReport(STATE_MORNING_REPORT_DATE, today, "手动补发"));
+            jobs.run(JOB_EVENING_REPORT, () -> sendScheduledReport(STATE_EVENING_REPORT_DATE, today, "手动补发"));
 
             // 触发任务提醒检查
-            checkTaskDeadlineWarnings(today, hour);
-            checkOverdueTasks(today, hour);
+            jobs.run(JOB_TASK_REMINDERS, () -> {
+                checkTaskDeadlineWarnings(today, hour);
+                checkOverdueTasks(today, hour);
+            });
 
             Log.d(TAG, "所有报告检查完成");
         } catch (Exception e) {
@@ -1058,10 +1262,10 @@ public class MessageListenerService extends Service {
             Log.d(TAG, "手动触发每日待办任务生成");
 
             // 强制生成今日任务（不检查lastAddedDate）
-            android.content.SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-            boolean enabled = prefs.getBoolean("daily_todo_enabled", true);
-            boolean skipHolidays = prefs.getBoolean("daily_todo_skip_holidays", true);
-            String template = prefs.getString("daily_todo_template", "");
+            AppSettings settings = AppSettings.get(this);
+            boolean enabled = settings.dailyTodoEnabled;
+            boolean skipHolidays = settings.dailyTodoSkipHolidays;
+            String template = settings.dailyTodoTemplateOr("");
 
             if (!enabled || template == null || template.trim().isEmpty()) {
                 Log.d(TAG, "每日待办未启用或模板为空，跳过生成");
@@ -1075,10 +1279,14 @@ public class MessageListenerService extends Service {
             }
 
             // 生成今日任务
-            generateDailyTodos(template, today);
+            if (generateDailyTodos(template, today)) {
+                dailyTodoDoneDate = today;
+            }
 
             // 更新最后添加日期
-            prefs.edit().putString("daily_todo_last_added_date", today).apply();
+            getSharedPreferences("app_prefs", MODE_PRIVATE)
+                .edit().putString("daily_todo_last_added_date", today).apply();
+            AppSettings.reload(this);
             Log.d(TAG, "手动触发每日待办任务生成完成");
 
         } catch (Exception e) {
@@ -1086,112 +1294,27 @@ public class MessageListenerService extends Service {
         }
     }
 
-    /**
-     * 检查今天是否已经创建过每日任务
-     * @param today 今天的日期字符串 (格式: yyyy-MM-dd)
-     * @return true表示今天已经创建过每日任务，false表示还未创建
-     */
-    private boolean checkTaskExistsToday(String supabaseUrl, String supabaseAnonKey, String supabaseUserId,
-                                         String title, String assignee, String today) {
-        try {
-
-            // 构建查询URL：查询今天创建的、标记为每日待办的任务
-            // created_at.gte=今天开始时间&created_at.lt=明天开始时间&is_daily_todo=eq.true&user_id=eq.用户ID
-            String todayStart = today + "T00:00:00";
-            String tomorrowStart = getNextDay(today) + "T00:00:00";
-
-            String queryUrl = supabaseUrl + "/rest/v1/tasks?" +
-                "user_id=eq." + supabaseUserId +
-                "&title=eq." + java.net.URLEncoder.encode(title, "UTF-8") +
-                "&assignee=eq." + java.net.URLEncoder.encode(assignee, "UTF-8") +
-                "&created_at=gte." + todayStart +
-                "&created_at=lt." + tomorrowStart +
-                "&select=id";
-
-            Log.d(TAG, "检查任务是否存在 - URL: " + queryUrl);
-
-            java.net.URL url = new java.net.URL(queryUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-
-            int responseCode = connection.getResponseCode();
-
-            if (responseCode == java.net.HttpURLConnection.HTTP_OK) {
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                String result = response.toString();
-                Log.d(TAG, "查询结果: " + result);
-
-                // 解析JSON数组，如果有数据说明任务已存在
-                org.json.JSONArray jsonArray = new org.json.JSONArray(result);
-                boolean exists = jsonArray.length() > 0;
-
-                if (exists) {
-                    Log.d(TAG, "任务已存在: " + title + " (负责人: " + assignee + ")");
-                } else {
-                    Log.d(TAG, "任务不存在，可以创建: " + title + " (负责人: " + assignee + ")");
-                }
-
-                return exists;
-            } else {
-                Log.e(TAG, "查询任务失败，响应码: " + responseCode);
-                return true; // 查询失败时，默认认为不存在，允许创建
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "检查任务是否存在时发生异常", e);
-            return false; // 异常时，默认认为不存在，允许创建
-        }
-    }
-
-    /**
-     * 获取下一天的日期字符串
-     * @param dateStr 日期字符串 (格式: yyyy-MM-dd)
-     * @return 下一天的日期字符串 (格式: yyyy-MM-dd)
-     */
-    private String getNextDay(String dateStr) {
-        try {
-            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault());
-            java.util.Date date = sdf.parse(dateStr);
-            java.util.Calendar calendar = java.util.Calendar.getInstance();
-            calendar.setTime(date);
-            calendar.add(java.util.Calendar.DAY_OF_MONTH, 1);
-            return sdf.format(calendar.getTime());
-        } catch (Exception e) {
-            Log.e(TAG, "获取下一天日期失败", e);
-            return dateStr;
-        }
-    }
-
     /**
      * 检查并生成每日待办任务
+     * @return 今天是否已处理完成（已生成、未启用或节假日跳过），失败时返回false以便稍后重试
      */
-    private void checkAndGenerateDailyTodos(String today) {
+    private boolean checkAndGenerateDailyTodos(String today) {
         try {
             if (currentUserId == null || currentUserId.isEmpty()) {
                 Log.w(TAG, "用户ID为空，跳过每日待办任务生成");
-                return;
+                return false;
             }
 
             // 获取每日待办配置
-            android.content.SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-            boolean enabled = prefs.getBoolean("daily_todo_enabled", true);
-            boolean skipHolidays = prefs.getBoolean("daily_todo_skip_holidays", true);
-            String template = prefs.getString("daily_todo_template", "上班打卡|high|work|09:50\n下班打卡|high|work|19:00");
-            String lastAddedDate = prefs.getString("daily_todo_last_added_date", "");
+            AppSettings settings = AppSettings.get(this);
+            boolean enabled = settings.dailyTodoEnabled;
+            boolean skipHolidays = settings.dailyTodoSkipHolidays;
+            String template = settings.dailyTodoTemplateOr(AppSettings.DEFAULT_DAILY_TODO_TEMPLATE);
+            String lastAddedDate = settings.dailyTodoLastAddedDate;
 
             // 如果未启用或模板为空，跳过（不打印日志，避免频繁输出）
             if (!enabled || template == null || template.trim().isEmpty()) {
-                return;
+                return true;
             }
 
 
@@ -1202,34 +1325,39 @@ public class MessageListenerService extends Service {
             // 如果启用了跳过节假日，检查今天是否为节假日
             if (skipHolidays && isHoliday(new java.util.Date())) {
                 Log.d(TAG, "今天是节假日，跳过每日待办任务生成");
-                return;
+                return true;
             }
 
             // 生成今日任务
-            generateDailyTodos(template, today);
+            if (!generateDailyTodos(template, today)) {
+                return false;
+            }
             Log.d(TAG, "每日待办任务生成完成，日期: " + today);
+            return true;
 
         } catch (Exception e) {
             Log.e(TAG, "检查并生成每日待办任务失败", e);
+            return false;
         }
     }
 
     /**
      * 生成每日待办任务（支持JSON格式和旧的字符串格式）
+     * @return 是否成功提交
      */
-    private void generateDailyTodos(String template, String date) {
+    private boolean generateDailyTodos(String template, String date) {
         try {
-            android.content.SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
+            AppSettings settings = AppSettings.get(this);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
 
             if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty() || supabaseUserId.isEmpty()) {
                 Log.w(TAG, "Supabase配置不完整，无法生成每日待办任务");
-                return;
+                return false;
             }
 
-            int createdCount = 0;
+            DailyTodoBatch batch = new DailyTodoBatch(date, supabaseUserId);
 
             // 尝试解析为JSON格式
             try {
@@ -1263,19 +1391,7 @@ public class MessageListenerService extends Service {
 
                     // 构建截止时间
                     String deadline = buildDeadlineTime(date, timeStr);
-
-                    // 检查今天是否已经创建过
-                    if (checkTaskExistsToday(supabaseUrl, supabaseAnonKey, supabaseUserId, title, assignee, date)) {
-                        continue;
-                    }
-
-                    // 创建任务
-                    String createdTaskId = createDailyTaskWithNotes(supabaseUrl, supabaseAnonKey, supabaseUserId,
-                            title, priority, category, deadline, assignee, notes);
-                    if (createdTaskId != null) {
-                        createdCount++;
-                        Log.d(TAG, "创建每日待办任务成功: " + title + ", ID: " + createdTaskId);
-                    }
+                    batch.add(title, priority, category, deadline, assignee, notes);
                 }
             } catch (org.json.JSONException e) {
                 // 不是JSON格式，尝试解析为旧格式（字符串模板）
@@ -1298,26 +1414,29 @@ public class MessageListenerService extends Service {
 
                     // 构建截止时间
                     String deadline = buildDeadlineTime(date, timeStr);
+                    batch.add(title, priority, category, deadline, assignee, null);
+                }
+            }
 
-                    // 检查今天是否已经创建过
-                    if (checkTaskExistsToday(supabaseUrl, supabaseAnonKey, supabaseUserId, title, assignee, date)) {
-                        continue;
-                    }
+            // 整批一次写入，今天已存在的任务（相同确定性id）由服务端忽略
+            java.util.List<DailyTodoBatch.CreatedTask> created = batch.submit(httpClient, supabaseUrl, supabaseAnonKey, notificationLedger);
+            if (created == null) {
+                Log.e(TAG, "批量创建每日待办任务失败");
+                return false;
+            }
 
-                    // 创建任务
-                    String createdTaskId = createDailyTask(supabaseUrl, supabaseAnonKey, supabaseUserId,
-                            title, priority, category, deadline, assignee);
-                    if (createdTaskId != null) {
-                        createdCount++;
-                        Log.d(TAG, "创建每日待办任务成功: " + title + ", ID: " + createdTaskId);
-                    }
-                }
+            // 只为本次真正新建的任务生成消息通知
+            for (DailyTodoBatch.CreatedTask task : created) {
+                Log.d(TAG, "创建每日待办任务成功: " + task.title + ", ID: " + task.id);
+                createTaskNotificationMessage(supabaseUrl, supabaseAnonKey, supabaseUserId, task.id, task.title, "daily_task", task.assignee);
             }
 
-            Log.d(TAG, "共创建 " + createdCount + " 个每日待办任务");
+            Log.d(TAG, "共创建 " + created.size() + " 个每日待办任务");
+            return true;
 
         } catch (Exception e) {
             Log.e(TAG, "生成每日待办任务失败", e);
+            return false;
         }
     }
 
@@ -1339,176 +1458,16 @@ public class MessageListenerService extends Service {
         }
     }
 
-    /**
-     * 创建每日任务到Supabase（带备注支持）
-     * @return 任务ID，如果创建失败返回null
-     */
-    private String createDailyTaskWithNotes(String supabaseUrl, String supabaseAnonKey, String supabaseUserId,
-                                             String title, String priority, String category, String deadline,
-                                             String assignee, String notes) {
-        try {
-            String createUrl = supabaseUrl + "/rest/v1/tasks";
-
-            java.net.URL url = new java.net.URL(createUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Prefer", "return=minimal");
-            connection.setDoOutput(true);
-            String taskId = java.util.UUID.randomUUID().toString().replace("-", "").substring(0, 24);
-
-            // 构建任务数据
-            org.json.JSONObject taskData = new org.json.JSONObject();
-            taskData.put("id", taskId);
-            taskData.put("user_id", supabaseUserId);
-            taskData.put("title", title);
-            taskData.put("priority", priority);
-            taskData.put("category", category);
-            taskData.put("deadline", deadline);
-            taskData.put("assignee", assignee);
-            if (notes != null && !notes.isEmpty()) {
-                taskData.put("notes", notes);
-            }
-            // 使用本地时间格式，不使用UTC标识
-            taskData.put("created_at", getCurrentLocalTimestamp());
-            taskData.put("completed", false);
-
-            String jsonPayload = taskData.toString();
-            Log.d(TAG, "创建任务JSON: " + jsonPayload);
-
-            java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(connection.getOutputStream());
-            writer.write(jsonPayload);
-            writer.flush();
-            writer.close();
-
-            int responseCode = connection.getResponseCode();
-            boolean success = responseCode == java.net.HttpURLConnection.HTTP_OK ||
-                            responseCode == java.net.HttpURLConnection.HTTP_CREATED ||
-                            responseCode == java.net.HttpURLConnection.HTTP_NO_CONTENT;
-
-            if (!success) {
-                Log.e(TAG, "创建任务失败，响应码: " + responseCode);
-                // 读取错误响应
-                try {
-                    java.io.BufferedReader errorReader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(connection.getErrorStream()));
-                    StringBuilder errorResponse = new StringBuilder();
-                    String line;
-                    while ((line = errorReader.readLine()) != null) {
-                        errorResponse.append(line);
-                    }
-                    errorReader.close();
-                    Log.e(TAG, "错误响应: " + errorResponse.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "读取错误响应失败", e);
-                }
-            }
-
-            // 如果创建成功，生成消息通知
-            if (success) {
-                createTaskNotificationMessage(supabaseUrl, supabaseAnonKey, supabaseUserId, taskId, title, "daily_task", assignee);
-                return taskId;
-            }
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "创建每日任务异常", e);
-            return null;
-        }
-    }
-
-    /**
-     * 创建每日任务到Supabase
-     * @return 任务ID，如果创建失败返回null
-     */
-    private String createDailyTask(String supabaseUrl, String supabaseAnonKey, String supabaseUserId,
-                                    String title, String priority, String category, String deadline, String assignee) {
-        try {
-            String createUrl = supabaseUrl + "/rest/v1/tasks";
-
-            java.net.URL url = new java.net.URL(createUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Prefer", "return=minimal");
-            connection.setDoOutput(true);
-            String taskId = java.util.UUID.randomUUID().toString().replace("-", "").substring(0, 24);
-
-            // 构建任务数据
-            org.json.JSONObject taskData = new org.json.JSONObject();
-            taskData.put("id", taskId);
-            taskData.put("user_id", supabaseUserId);
-            taskData.put("title", title);
-            taskData.put("priority", priority);
-            taskData.put("category", category);
-            taskData.put("deadline", deadline);
-            taskData.put("assignee", assignee);
-            // 使用本地时间格式，不使用UTC标识
-            taskData.put("created_at", getCurrentLocalTimestamp());
-            taskData.put("completed", false);
-
-            String jsonPayload = taskData.toString();
-            Log.d(TAG, "创建任务JSON: " + jsonPayload);
-
-            java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(connection.getOutputStream());
-            writer.write(jsonPayload);
-            writer.flush();
-            writer.close();
-
-            int responseCode = connection.getResponseCode();
-            boolean success = responseCode == java.net.HttpURLConnection.HTTP_OK ||
-                            responseCode == java.net.HttpURLConnection.HTTP_CREATED ||
-                            responseCode == java.net.HttpURLConnection.HTTP_NO_CONTENT;
-
-            if (!success) {
-                Log.e(TAG, "创建任务失败，响应码: " + responseCode);
-                // 读取错误响应
-                try {
-                    java.io.BufferedReader errorReader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(connection.getErrorStream()));
-                    StringBuilder errorResponse = new StringBuilder();
-                    String line;
-                    while ((line = errorReader.readLine()) != null) {
-                        errorResponse.append(line);
-                    }
-                    errorReader.close();
-                    Log.e(TAG, "错误响应: " + errorResponse.toString());
-                } catch (Exception e) {
-                    Log.e(TAG, "读取错误响应失败", e);
-                }
-            }
-
-            // 如果创建成功，生成消息通知
-            if (success) {
-                createTaskNotificationMessage(supabaseUrl, supabaseAnonKey, supabaseUserId, taskId, title, "daily_task", assignee);
-                return taskId;
-            }
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "创建每日任务异常", e);
-            return null;
-        }
-    }
-
-    /**
-     * 格式化当前时间为本地时间ISO字符串（不带时区标识）
-     */
-    private String getCurrentLocalTimestamp() {
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", java.util.Locale.getDefault());
-        return sdf.format(new java.util.Date());
-    }
-
     /**
      * 创建任务通知消息到数据库
-     * 适配现有messages表结构: sender_id, receiver_id, task_id, message_type, title, content, task_title, is_read, user_id
+     * 适配现有messages表结构: sender_id, receiver_id, task_id, message_type, title, content, task_title, is_read, user_id, notify_date
+     * 所有完成人的消息一次批量写入；服务端 (task_id, receiver_id, message_type, notify_date) 唯一索引配合ignore-duplicates，
+     * 多台设备同时提醒或重复触发时同一天只保留一条（见 pg_messages_notify_unique.sql）
      * @param assignees 任务完成人，多个完成人用逗号分隔，为每个完成人创建一条消息
      */
     private void createTaskNotificationMessage(String supabaseUrl, String supabaseAnonKey, String supabaseUserId,
                                                 String taskId, String taskTitle, String messageType, String assignees) {
-        new Thread(() -> {
+        AppExecutors.getInstance().sync().execute(() -> {
             try {
                 // 处理assignees参数：可能是单个完成人或逗号分隔的多个完成人
                 if (assignees == null || assignees.trim().isEmpty()) {
@@ -1516,144 +1475,75 @@ public class MessageListenerService extends Service {
                     return;
                 }
 
-                // 分割完成人（支持逗号分隔）
-                String[] assigneeArray = assignees.split(",");
-                Log.d(TAG, "为任务 " + taskId + " 创建消息，完成人数量: " + assigneeArray.length);
+                String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
+                    .format(new java.util.Date());
+
+                // 分割完成人（支持逗号分隔），今天已创建过的跳过
+                java.util.Set<String> receivers = new java.util.LinkedHashSet<>();
+                for (String assignee : assignees.split(",")) {
+                    String trimmedAssignee = assignee.trim();
+                    if (!trimmedAssignee.isEmpty()
+                            && !notificationLedger.containsKey(today, createdMessageKey(messageType, taskId, trimmedAssignee))) {
+                        receivers.add(trimmedAssignee);
+                    }
+                }
+                if (receivers.isEmpty()) {
+                    return;
+                }
+                Log.d(TAG, "为任务 " + taskId + " 创建消息，完成人数量: " + receivers.size());
 
                 // 构建消息内容（所有完成人共享相同的内容）
                 String messageContent = buildMessageContent(taskTitle, messageType);
                 String messageTitle = buildMessageTitle(messageType);
 
-                // 为每个完成人创建一条消息
-                for (String assignee : assigneeArray) {
-                    String trimmedAssignee = assignee.trim();
-                    if (trimmedAssignee.isEmpty()) {
-                        continue;
-                    }
+                org.json.JSONArray payload = new org.json.JSONArray();
+                for (String receiver : receivers) {
+                    org.json.JSONObject messageData = new org.json.JSONObject();
+                    messageData.put("sender_id", "system"); // 系统消息
+                    messageData.put("receiver_id", receiver); // 接收者 = 任务完成人
+                    messageData.put("user_id", supabaseUserId); // Supabase用户ID
+                    messageData.put("task_id", taskId); // 任务ID
+                    messageData.put("message_type", messageType); // 消息类型
+                    messageData.put("title", messageTitle); // 消息标题
+                    messageData.put("content", messageContent); // 消息内容
+                    messageData.put("task_title", taskTitle); // 任务标题
+                    messageData.put("is_read", false); // 未读
+                    messageData.put("notify_date", today); // 去重日期
+                    // created_at会自动使用数据库默认值now()
+                    payload.put(messageData);
+                }
 
-                    // 检查该完成人是否已有相同消息（重复性校验）
-                    if (checkMessageExistsForReceiver(supabaseUrl, supabaseAnonKey, supabaseUserId, taskId, messageType, trimmedAssignee)) {
-                        Log.d(TAG, "消息已存在，跳过创建: taskId=" + taskId + ", receiver=" + trimmedAssignee + ", type=" + messageType);
-                        continue;
+                String createUrl = supabaseUrl + "/rest/v1/messages?on_conflict=task_id,receiver_id,message_type,notify_date";
+                int responseCode;
+                try (SupabaseHttpClient.Response response = httpClient.send("POST", createUrl, supabaseAnonKey,
+                        payload.toString(), "resolution=ignore-duplicates,return=minimal")) {
+                    responseCode = response.code();
+                    if (responseCode >= 400) {
+                        Log.e(TAG, "错误响应: " + response.bodyString());
                     }
-
-                    // 为该完成人创建消息
-                    createMessageForAssignee(supabaseUrl, supabaseAnonKey, supabaseUserId, taskId, taskTitle, messageType,
-                                            trimmedAssignee, messageTitle, messageContent);
+                }
+                boolean success = responseCode == java.net.HttpURLConnection.HTTP_OK ||
+                        responseCode == java.net.HttpURLConnection.HTTP_CREATED ||
+                        responseCode == java.net.HttpURLConnection.HTTP_NO_CONTENT;
+
+                if (success) {
+                    // 已存在的行由服务端忽略，同样视为今天已创建
+                    for (String receiver : receivers) {
+                        notificationLedger.markKey(today, createdMessageKey(messageType, taskId, receiver));
+                    }
+                    Log.d(TAG, "批量创建消息成功: taskId=" + taskId + ", type=" + messageType + ", 接收者: " + receivers);
+                } else {
+                    Log.e(TAG, "批量创建消息失败: taskId=" + taskId + "，响应码: " + responseCode);
                 }
 
             } catch (Exception e) {
                 Log.e(TAG, "创建任务通知消息异常", e);
             }
-        }).start();
-    }
-
-    /**
-     * 为单个完成人创建消息记录
-     */
-    private void createMessageForAssignee(String supabaseUrl, String supabaseAnonKey, String supabaseUserId,
-                                           String taskId, String taskTitle, String messageType, String assignee,
-                                           String messageTitle, String messageContent) {
-        try {
-            String createUrl = supabaseUrl + "/rest/v1/messages";
-
-            java.net.URL url = new java.net.URL(createUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Prefer", "return=minimal");
-            connection.setDoOutput(true);
-
-            // 构建消息数据（适配现有表结构）
-            org.json.JSONObject messageData = new org.json.JSONObject();
-            messageData.put("sender_id", "system"); // 系统消息
-            messageData.put("receiver_id", assignee); // 接收者 = 任务完成人
-            messageData.put("user_id", supabaseUserId); // Supabase用户ID
-            messageData.put("task_id", taskId); // 任务ID
-            messageData.put("message_type", messageType); // 消息类型
-            messageData.put("title", messageTitle); // 消息标题
-            messageData.put("content", messageContent); // 消息内容
-            messageData.put("task_title", taskTitle); // 任务标题
-            messageData.put("is_read", false); // 未读
-            // created_at会自动使用数据库默认值now()
-
-            String jsonPayload = messageData.toString();
-            Log.d(TAG, "创建消息JSON (receiver=" + assignee + "): " + jsonPayload);
-
-            java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(connection.getOutputStream());
-            writer.write(jsonPayload);
-            writer.flush();
-            writer.close();
-
-            int responseCode = connection.getResponseCode();
-            boolean success = responseCode == java.net.HttpURLConnection.HTTP_OK ||
-                    responseCode == java.net.HttpURLConnection.HTTP_CREATED ||
-                    responseCode == java.net.HttpURLConnection.HTTP_NO_CONTENT;
-
-            if (success) {
-                Log.d(TAG, "创建消息成功 (receiver=" + assignee + "): " + messageContent);
-            } else {
-                Log.e(TAG, "创建消息失败 (receiver=" + assignee + ")，响应码: " + responseCode);
-            }
-
-            connection.disconnect();
-        } catch (Exception e) {
-            Log.e(TAG, "为完成人创建消息异常: " + assignee, e);
-        }
+        });
     }
 
-    /**
-     * 检查指定接收者的消息是否已存在（重复性校验）
-     */
-    private boolean checkMessageExistsForReceiver(String supabaseUrl, String supabaseAnonKey, String supabaseUserId,
-                                                   String taskId, String messageType, String receiverId) {
-        try {
-            // 获取今天的日期范围
-            java.util.Calendar calendar = java.util.Calendar.getInstance();
-            java.text.SimpleDateFormat dateFormat = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault());
-            String today = dateFormat.format(calendar.getTime());
-
-            calendar.add(java.util.Calendar.DAY_OF_MONTH, 1);
-            String tomorrow = dateFormat.format(calendar.getTime());
-
-            String queryUrl = supabaseUrl + "/rest/v1/messages?user_id=eq." + supabaseUserId +
-                    "&task_id=eq." + taskId +
-                    "&message_type=eq." + messageType +
-                    "&receiver_id=eq." + receiverId +
-                    "&created_at.gte=" + today + "T00:00:00" +
-                    "&created_at.lt=" + tomorrow + "T00:00:00" +
-                    "&select=id";
-
-            java.net.URL url = new java.net.URL(queryUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == java.net.HttpURLConnection.HTTP_OK) {
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                org.json.JSONArray jsonArray = new org.json.JSONArray(response.toString());
-                boolean exists = jsonArray.length() > 0;
-                Log.d(TAG, "检查消息是否存在: taskId=" + taskId + ", receiver=" + receiverId + ", exists=" + exists);
-                return exists;
-            }
-
-            connection.disconnect();
-        } catch (Exception e) {
-            Log.e(TAG, "检查消息是否存在失败", e);
-        }
-        return false;
+    private static String createdMessageKey(String messageType, String taskId, String receiver) {
+        return "created-" + messageType + "-" + taskId + "-" + receiver;
     }
 
     /**
@@ -1678,30 +1568,14 @@ public class MessageListenerService extends Service {
                     "&created_at.lt=" + tomorrow + "T00:00:00" +
                     "&select=id";
 
-            java.net.URL url = new java.net.URL(queryUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == java.net.HttpURLConnection.HTTP_OK) {
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
+            try (SupabaseHttpClient.Response response = httpClient.get(queryUrl, supabaseAnonKey)) {
+                if (response.code() == java.net.HttpURLConnection.HTTP_OK) {
+                    org.json.JSONArray jsonArray = new org.json.JSONArray(response.bodyString());
+                    boolean exists = jsonArray.length() > 0;
+                    Log.d(TAG, "检查消息是否存在: taskId=" + taskId + ", exists=" + exists);
+                    return exists;
                 }
-                reader.close();
-
-                org.json.JSONArray jsonArray = new org.json.JSONArray(response.toString());
-                boolean exists = jsonArray.length() > 0;
-                Log.d(TAG, "检查消息是否存在: taskId=" + taskId + ", exists=" + exists);
-                return exists;
             }
-
-            connection.disconnect();
         } catch (Exception e) {
             Log.e(TAG, "检查消息是否存在失败", e);
         }
@@ -1751,119 +1625,121 @@ public class MessageListenerService extends Service {
     }
 
     /**
-     * 检查任务通知消息表中的未读消息
-     * 适配现有表结构：receiver_id, message_type, content等字段
+     * 按id水位拉取新的未读消息
+     * 首次（该用户没有水位）全量拉取一次未读消息，之后每次请求 id > 水位 的行，
+     * 并重新查询上次成功轮询前MESSAGE_CURSOR_OVERLAP_MS内创建的行和Realtime推送过来的id
+     * @return 未读消息，请求失败时返回null（此时不推进水位）
      */
-    private void checkTaskNotificationMessages() {
-        new Thread(() -> {
+    private synchronized List<SupabaseInterface.SimpleMessage> fetchNewUnreadMessages(String userId) {
+        String cursorKey = "messages.last_seen_id." + userId;
+        String pollTimeKey = "messages.last_poll_at." + userId;
+        if (!cursorKey.equals(messageCursorKey)) {
+            messageCursorKey = cursorKey;
+            lastSeenMessageId = -1;
+            lastMessagePollTime = 0;
             try {
-                String supabaseUrl = supabaseInterface.getSupabaseUrl();
-                String supabaseAnonKey = supabaseInterface.getSupabaseAnonKey();
-
-                if (supabaseUrl == null || supabaseAnonKey == null) {
-                    return;
+                String stored = localDb.getSyncState(cursorKey);
+                if (stored != null) {
+                    lastSeenMessageId = Long.parseLong(stored);
                 }
+                String storedPollTime = localDb.getSyncState(pollTimeKey);
+                if (storedPollTime != null) {
+                    lastMessagePollTime = Long.parseLong(storedPollTime);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "读取消息水位失败", e);
+            }
+        }
 
-                // 查询未读的系统消息（sender_id=system, receiver_id=当前用户）
-                String queryUrl = supabaseUrl + "/rest/v1/messages?receiver_id=eq." + currentUserId +
-                        "&sender_id=eq.system" +
-                        "&is_read=eq.false" +
-                        "&order=created_at.desc" +
-                        "&limit=50";
-
-                java.net.URL url = new java.net.URL(queryUrl);
-                java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setRequestProperty("apikey", supabaseAnonKey);
-                connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-
-                int responseCode = connection.getResponseCode();
-                if (responseCode == java.net.HttpURLConnection.HTTP_OK) {
-                    java.io.BufferedReader reader = new java.io.BufferedReader(
-                            new java.io.InputStreamReader(connection.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
-                    reader.close();
-
-                    org.json.JSONArray jsonArray = new org.json.JSONArray(response.toString());
-
-                    // 处理每条未读消息
-                    for (int i = 0; i < jsonArray.length(); i++) {
-                        org.json.JSONObject messageObj = jsonArray.getJSONObject(i);
-                        long messageId = messageObj.getLong("id"); // bigserial类型，直接获取long
-
-                        // 检查是否已经显示过
-                        if (!displayedMessageIds.contains(messageId)) {
-                            displayedMessageIds.add(messageId);
-
-                            String title = messageObj.getString("title");
-                            String content = messageObj.getString("content");
-
-                            // 在主线程发送通知
-                            mainHandler.post(() -> {
-                                notificationHelper.showTaskNotification(title, content, 0);
-                                Log.d(TAG, "显示任务通知消息: " + title + " - " + content);
-                            });
-
-                            // 标记消息为已读
-                            markMessageAsRead(supabaseUrl, supabaseAnonKey, String.valueOf(messageId));
-                        }
-                    }
+        long pollTime = System.currentTimeMillis();
+        List<SupabaseInterface.SimpleMessage> messages;
+        long maxId = Math.max(lastSeenMessageId, 0);
+        java.util.List<Long> pushedIds = new java.util.ArrayList<>(pushedMessageIds);
+        pushedMessageIds.removeAll(pushedIds);
+
+        if (lastSeenMessageId < 0) {
+            messages = supabaseInterface.getUnreadMessageList(userId);
+            if (messages == null) {
+                pushedMessageIds.addAll(pushedIds);
+                return null;
+            }
+            for (SupabaseInterface.SimpleMessage message : messages) {
+                maxId = Math.max(maxId, message.id);
+            }
+        } else {
+            // 上次成功轮询时间未知时（如升级后第一次），以本次时间为基准向前重叠
+            long overlapBase = lastMessagePollTime > 0 ? lastMessagePollTime : pollTime;
+            String createdSince = formatUtcTimestamp(overlapBase - MESSAGE_CURSOR_OVERLAP_MS);
+
+            messages = new java.util.ArrayList<>();
+            long pageAfterId = 0;
+            while (true) {
+                List<SupabaseInterface.SimpleMessage> page = supabaseInterface.getUnreadMessageListAfter(
+                        userId, pageAfterId, lastSeenMessageId, createdSince, pushedIds, MESSAGE_PAGE_SIZE);
+                if (page == null) {
+                    // 已拉到的页仍然返回（通知由ledger去重），但不推进水位，下次从原水位重新查询
+                    pushedMessageIds.addAll(pushedIds);
+                    return messages.isEmpty() ? null : messages;
+                }
+                messages.addAll(page);
+                for (SupabaseInterface.SimpleMessage message : page) {
+                    pageAfterId = Math.max(pageAfterId, message.id);
+                }
+                maxId = Math.max(maxId, pageAfterId);
+                if (page.size() < MESSAGE_PAGE_SIZE) {
+                    break;
                 }
+            }
+        }
 
-                connection.disconnect();
+        lastMessagePollTime = pollTime;
+        try {
+            localDb.setSyncState(pollTimeKey, String.valueOf(pollTime));
+        } catch (Exception e) {
+            Log.e(TAG, "保存消息轮询时间失败", e);
+        }
+        if (maxId != lastSeenMessageId) {
+            lastSeenMessageId = maxId;
+            try {
+                localDb.setSyncState(cursorKey, String.valueOf(maxId));
             } catch (Exception e) {
-                Log.e(TAG, "检查任务通知消息失败", e);
+                Log.e(TAG, "保存消息水位失败", e);
             }
-        }).start();
+        }
+        return messages;
     }
 
     /**
-     * 标记消息为已读
-     * 更新is_read为true，并设置read_at时间戳
+     * 格式化为PostgREST可比较的UTC时间（与timestamptz比较）
      */
-    private void markMessageAsRead(String supabaseUrl, String supabaseAnonKey, String messageId) {
-        new Thread(() -> {
-            try {
-                String updateUrl = supabaseUrl + "/rest/v1/messages?id=eq." + messageId;
-
-                java.net.URL url = new java.net.URL(updateUrl);
-                java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("PATCH");
-                connection.setRequestProperty("apikey", supabaseAnonKey);
-                connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
-
-                // 获取当前时间（ISO 8601格式，带时区）
-                java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", java.util.Locale.getDefault());
-                String readAt = sdf.format(new java.util.Date());
-
-                org.json.JSONObject updateData = new org.json.JSONObject();
-                updateData.put("is_read", true);
-                updateData.put("read_at", readAt); // 设置已读时间
-
-                java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(connection.getOutputStream());
-                writer.write(updateData.toString());
-                writer.flush();
-                writer.close();
-
-                int responseCode = connection.getResponseCode();
-                if (responseCode == java.net.HttpURLConnection.HTTP_OK ||
-                    responseCode == java.net.HttpURLConnection.HTTP_NO_CONTENT) {
-                    Log.d(TAG, "标记消息为已读成功: messageId=" + messageId);
-                } else {
-                    Log.e(TAG, "标记消息为已读失败，响应码: " + responseCode);
-                }
+    private static String formatUtcTimestamp(long timeMillis) {
+        java.text.SimpleDateFormat format = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", java.util.Locale.US);
+        format.setTimeZone(java.util.TimeZone.getTimeZone("UTC"));
+        return format.format(new java.util.Date(timeMillis));
+    }
 
-                connection.disconnect();
-            } catch (Exception e) {
-                Log.e(TAG, "标记消息为已读失败", e);
-            }
-        }).start();
+    /**
+     * 显示系统通知消息并标记为已读
+     * @return 是否为新显示的通知
+     */
+    private boolean showTaskNotificationMessage(SupabaseInterface.SimpleMessage message) {
+        // 检查是否已经显示过
+        if (!notificationLedger.markMessageShown(message.id)) {
+            return false;
+        }
+
+        String title = message.title;
+        String content = message.content;
+
+        // 在主线程发送通知
+        mainHandler.post(() -> {
+            notificationHelper.showTaskNotification(title, content, 0);
+            Log.d(TAG, "显示任务通知消息: " + title + " - " + content);
+        });
+
+        // 标记消息为已读（进入合并队列，批量写入）
+        ReadReceiptQueue.getInstance(this).enqueue(message.id);
+        return true;
     }
 
     /**
@@ -2041,16 +1917,27 @@ public class MessageListenerService extends Service {
         super.onDestroy();
         Log.d(TAG, "MessageListenerService 销毁");
 
-        if (messageTimer != null) {
-            messageTimer.cancel();
-            messageTimer = null;
+        stopRealtimeSubscription();
+        stopMessagePolling();
+
+        if (keepAlivePoller != null) {
+            keepAlivePoller.stop();
         }
 
-        if (keepAliveTimer != null) {
-            keepAliveTimer.cancel();
-            keepAliveTimer = null;
+        // 只停止进程内定时，闹钟保留，服务被回收后仍能按时拉起
+        TaskSyncManager.getInstance(this).removeListener(tasksChangedListener);
+        if (deadlineAlerts != null) {
+            deadlineAlerts.stop();
         }
 
+        try {
+            unregisterReceiver(screenStateReceiver);
+        } catch (Exception e) {
+            Log.e(TAG, "注销屏幕状态接收器失败", e);
+        }
+
+        AppSettings.removeListener(settingsListener);
+
         // 注销广播接收器
         try {
             unregisterReceiver(newMessageReceiver);
@@ -2063,6 +1950,9 @@ public class MessageListenerService extends Service {
             supabaseInterface.destroy();
         }
 
+        // 尽快写出尚在合并窗口中的已读回执
+        ReadReceiptQueue.getInstance(this).flushNow();
+
         // 服务被销毁时尝试重启
         Intent restartIntent = new Intent(this, MessageListenerService.class);
         startService(restartIntent);
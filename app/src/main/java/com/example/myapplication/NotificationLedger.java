@@ -0,0 +1,219 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 持久化的通知去重记录
+ * 已显示的消息ID保存在基本类型long哈希集合中，按日期分桶的记录（到期/逾期提醒、已创建的系统消息、已写入的每日待办）保存在内存桶中，
+ * 两者都同步写入SQLite，服务重启后从SQLite加载，不会重复通知。查询为O(1)内存操作；
+ * 消息记录保留7天、提醒记录保留3天，每天第一次使用时整体淘汰一次
+ */
+public class NotificationLedger {
+
+    private static final String TAG = "NotificationLedger";
+
+    private static final long MESSAGE_TTL_MS = 7 * 24 * 60 * 60 * 1000L;
+    private static final int KEY_BUCKET_DAYS = 3;
+
+    private static volatile NotificationLedger instance;
+
+    private final DatabaseHelper store;
+    private final LongHashSet messageIds = new LongHashSet(256);
+    // 日期(yyyy-MM-dd) -> 当天的提醒记录
+    private final java.util.HashMap<String, java.util.HashSet<String>> keyBuckets = new java.util.HashMap<>();
+
+    private boolean messagesLoaded = false;
+    private String lastPruneDate = "";
+
+    // 统计
+    private long duplicateCount = 0;
+
+    public static NotificationLedger getInstance(Context context) {
+        if (instance == null) {
+            synchronized (NotificationLedger.class) {
+                if (instance == null) {
+                    instance = new NotificationLedger(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private NotificationLedger(Context context) {
+        this.store = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * 记录消息已显示
+     * @return 是否为第一次显示（已显示过时返回false）
+     */
+    public synchronized boolean markMessageShown(long messageId) {
+        prepare();
+        if (!messageIds.add(messageId)) {
+            duplicateCount++;
+            return false;
+        }
+        try {
+            store.insertNotifiedMessage(messageId, System.currentTimeMillis());
+        } catch (Exception e) {
+            Log.e(TAG, "保存消息通知记录失败: " + messageId, e);
+        }
+        return true;
+    }
+
+    /**
+     * 记录指定日期的提醒
+     * @return 是否为当天第一次（已记录过时返回false）
+     */
+    public synchronized boolean markKey(String date, String key) {
+        prepare();
+        if (!bucket(date).add(key)) {
+            duplicateCount++;
+            return false;
+        }
+        try {
+            store.insertNotifiedKey(date, key, System.currentTimeMillis());
+        } catch (Exception e) {
+            Log.e(TAG, "保存提醒记录失败: " + date + " " + key, e);
+        }
+        return true;
+    }
+
+    public synchronized boolean containsKey(String date, String key) {
+        prepare();
+        return bucket(date).contains(key);
+    }
+
+    private java.util.HashSet<String> bucket(String date) {
+        java.util.HashSet<String> keys = keyBuckets.get(date);
+        if (keys == null) {
+            keys = new java.util.HashSet<>();
+            try {
+                keys.addAll(store.getNotifiedKeys(date));
+            } catch (Exception e) {
+                Log.e(TAG, "加载提醒记录失败: " + date, e);
+            }
+            keyBuckets.put(date, keys);
+        }
+        return keys;
+    }
+
+    /**
+     * 首次使用时加载消息记录；日期变化时淘汰过期记录
+     */
+    private void prepare() {
+        String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
+            .format(new java.util.Date());
+        if (messagesLoaded && today.equals(lastPruneDate)) {
+            return;
+        }
+
+        long cutoff = System.currentTimeMillis() - MESSAGE_TTL_MS;
+        java.util.Calendar calendar = java.util.Calendar.getInstance();
+        calendar.add(java.util.Calendar.DAY_OF_MONTH, -(KEY_BUCKET_DAYS - 1));
+        String oldestBucket = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
+            .format(calendar.getTime());
+
+        try {
+            store.pruneNotificationLedger(cutoff, oldestBucket);
+            messageIds.clear();
+            for (long id : store.getNotifiedMessageIds(cutoff)) {
+                messageIds.add(id);
+            }
+            Log.d(TAG, "加载消息通知记录 " + messageIds.size() + " 条");
+        } catch (Exception e) {
+            Log.e(TAG, "加载通知去重记录失败", e);
+        }
+
+        java.util.Iterator<String> iterator = keyBuckets.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().compareTo(oldestBucket) < 0) {
+                iterator.remove();
+            }
+        }
+
+        messagesLoaded = true;
+        lastPruneDate = today;
+    }
+
+    public synchronized JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("messageIds", messageIds.size());
+            stats.put("keyBuckets", keyBuckets.size());
+            stats.put("duplicates", duplicateCount);
+            stats.put("lastPruneDate", lastPruneDate);
+        } catch (JSONException e) {
+            Log.e(TAG, "生成去重统计失败", e);
+        }
+        return stats;
+    }
+
+    /**
+     * 开放寻址的long集合，避免HashSet<Long>的装箱和节点开销
+     */
+    private static final class LongHashSet {
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] table;
+        private int size;
+
+        LongHashSet(int initialCapacity) {
+            table = new long[Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1];
+            java.util.Arrays.fill(table, EMPTY);
+        }
+
+        boolean add(long value) {
+            if (value == EMPTY) {
+                return false;
+            }
+            if ((size + 1) * 2 > table.length) {
+                resize();
+            }
+            int index = indexOf(value, table);
+            if (table[index] == value) {
+                return false;
+            }
+            table[index] = value;
+            size++;
+            return true;
+        }
+
+        boolean contains(long value) {
+            return value != EMPTY && table[indexOf(value, table)] == value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            java.util.Arrays.fill(table, EMPTY);
+            size = 0;
+        }
+
+        private static int indexOf(long value, long[] table) {
+            int mask = table.length - 1;
+            int index = (int) (value ^ (value >>> 32)) * 0x9E3779B9 & mask;
+            while (table[index] != EMPTY && table[index] != value) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            java.util.Arrays.fill(table, EMPTY);
+            for (long value : old) {
+                if (value != EMPTY) {
+                    table[indexOf(value, table)] = value;
+                }
+            }
+        }
+    }
+}
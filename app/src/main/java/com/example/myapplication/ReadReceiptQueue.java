@@ -0,0 +1,171 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已读回执合并队列
+ * 在短时间窗口内收集需要标记为已读的消息id，合并为一次 id=in.(...) 的PATCH写入；失败时按退避重试
+ */
+public class ReadReceiptQueue {
+
+    private static final String TAG = "ReadReceiptQueue";
+
+    // 合并窗口：窗口内的已读回执合并为一次请求
+    private static final long FLUSH_WINDOW_MS = 500;
+    // 单次PATCH最多携带的id数量，避免URL过长
+    private static final int MAX_IDS_PER_REQUEST = 100;
+    // 失败重试次数和初始退避时间
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MS = 2000;
+
+    private static volatile ReadReceiptQueue instance;
+
+    private final Context context;
+    private final SupabaseHttpClient httpClient = SupabaseHttpClient.getInstance();
+    private final AppExecutors executors = AppExecutors.getInstance();
+
+    // 等待写入的消息id -> 等待结果的调用方
+    private final java.util.Map<Long, java.util.List<CompletableFuture<Boolean>>> pending = new java.util.LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    public static ReadReceiptQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ReadReceiptQueue.class) {
+                if (instance == null) {
+                    instance = new ReadReceiptQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ReadReceiptQueue(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 将消息加入已读队列
+     * @return 该消息最终写入成功与否
+     */
+    public CompletableFuture<Boolean> enqueue(long messageId) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        synchronized (pending) {
+            java.util.List<CompletableFuture<Boolean>> waiters = pending.get(messageId);
+            if (waiters == null) {
+                waiters = new java.util.ArrayList<>();
+                pending.put(messageId, waiters);
+            }
+            waiters.add(future);
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executors.scheduler().schedule(() -> executors.sync().execute(this::flush),
+                        FLUSH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 立即写入当前队列中的所有回执（服务销毁前调用）
+     */
+    public void flushNow() {
+        executors.sync().execute(this::flush);
+    }
+
+    private void flush() {
+        java.util.Map<Long, java.util.List<CompletableFuture<Boolean>>> batch;
+        synchronized (pending) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new java.util.LinkedHashMap<>(pending);
+            pending.clear();
+        }
+
+        java.util.List<Long> ids = new java.util.ArrayList<>(batch.keySet());
+        for (int start = 0; start < ids.size(); start += MAX_IDS_PER_REQUEST) {
+            java.util.List<Long> chunk = ids.subList(start, Math.min(start + MAX_IDS_PER_REQUEST, ids.size()));
+            java.util.Map<Long, java.util.List<CompletableFuture<Boolean>>> chunkWaiters = new java.util.LinkedHashMap<>();
+            for (Long id : chunk) {
+                chunkWaiters.put(id, batch.get(id));
+            }
+            send(chunkWaiters, 1);
+        }
+    }
+
+    private void send(java.util.Map<Long, java.util.List<CompletableFuture<Boolean>>> waiters, int attempt) {
+        boolean success = patchRead(waiters.keySet());
+        if (success) {
+            complete(waiters, true);
+            return;
+        }
+
+        if (attempt >= MAX_ATTEMPTS) {
+            Log.e(TAG, "标记已读重试 " + attempt + " 次仍失败，放弃: " + waiters.keySet());
+            complete(waiters, false);
+            return;
+        }
+
+        long delay = INITIAL_BACKOFF_MS << (attempt - 1);
+        Log.w(TAG, "标记已读失败，" + delay + "ms 后第 " + (attempt + 1) + " 次重试");
+        executors.scheduler().schedule(() -> executors.sync().execute(() -> send(waiters, attempt + 1)),
+                delay, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean patchRead(java.util.Collection<Long> ids) {
+        try {
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+
+            if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
+                Log.w(TAG, "Supabase配置不完整");
+                return false;
+            }
+
+            StringBuilder idList = new StringBuilder();
+            for (Long id : ids) {
+                if (idList.length() > 0) idList.append(',');
+                idList.append(id);
+            }
+            String updateUrl = supabaseUrl + "/rest/v1/messages?id=in.(" + idList + ")";
+
+            // 获取当前时间（ISO 8601格式，带时区）
+            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", java.util.Locale.getDefault());
+            JSONObject updateData = new JSONObject();
+            updateData.put("is_read", true);
+            updateData.put("read_at", sdf.format(new java.util.Date()));
+
+            try (SupabaseHttpClient.Response response = httpClient.send("PATCH", updateUrl, supabaseAnonKey,
+                    updateData.toString(), "return=minimal")) {
+                int responseCode = response.code();
+                if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
+                    Log.d(TAG, "批量标记已读成功: " + ids.size() + " 条");
+                    return true;
+                }
+                Log.e(TAG, "批量标记已读失败，响应码: " + responseCode);
+                return false;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "批量标记已读异常", e);
+            return false;
+        }
+    }
+
+    private void complete(java.util.Map<Long, java.util.List<CompletableFuture<Boolean>>> waiters, boolean success) {
+        for (java.util.List<CompletableFuture<Boolean>> futures : waiters.values()) {
+            for (CompletableFuture<Boolean> future : futures) {
+                future.complete(success);
+            }
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.security.SecureRandom;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Supabase Realtime订阅客户端
+ * 通过websocket（帧和握手见WebSocketConnection）使用Phoenix协议订阅表的INSERT事件；
+ * 连接断开后按退避自动重连，由调用方在断开期间回退到轮询。
+ * 地址由Supabase URL推导（http→ws, https→wss），指向本地websocket服务即可联调
+ */
+public class RealtimeClient {
+
+    private static final String TAG = "RealtimeClient";
+
+    // Phoenix心跳间隔，服务端约60秒无心跳会断开
+    private static final long HEARTBEAT_INTERVAL_MS = 25 * 1000;
+    // 读超时：两次心跳都没有任何数据返回视为连接已失效
+    private static final int READ_TIMEOUT_MS = (int) (HEARTBEAT_INTERVAL_MS * 2 + 10 * 1000);
+    private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+    // 重连退避
+    private static final long INITIAL_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 60 * 1000;
+
+    /**
+     * 订阅事件回调（在读取线程中调用，耗时操作请转交线程池）
+     */
+    public interface Listener {
+        /** 订阅已被服务端确认，此后的插入会实时推送 */
+        void onSubscribed();
+
+        /** 收到一条插入记录 */
+        void onInsert(JSONObject record);
+
+        /** 连接断开（之后会自动重连） */
+        void onDisconnected(Exception cause);
+    }
+
+    private final String supabaseUrl;
+    private final String supabaseAnonKey;
+    private final String table;
+    private final String filter;
+    private final Listener listener;
+
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicInteger refCounter = new AtomicInteger();
+
+    private volatile boolean running = false;
+    private volatile boolean subscribed = false;
+    private volatile Socket socket;
+    private volatile WebSocketConnection connection;
+    private Thread readerThread;
+    private ScheduledFuture<?> heartbeatFuture;
+    private String joinRef;
+
+    /**
+     * @param filter Realtime过滤条件，例如 receiver_id=eq.xxx
+     */
+    public RealtimeClient(String supabaseUrl, String supabaseAnonKey, String table, String filter, Listener listener) {
+        this.supabaseUrl = supabaseUrl;
+        this.supabaseAnonKey = supabaseAnonKey;
+        this.table = table;
+        this.filter = filter;
+        this.listener = listener;
+    }
+
+    /**
+     * 开始连接并保持订阅，直到stop()
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        // 读取循环会一直阻塞在socket上，使用独立线程而不是占用AppExecutors的通道
+        readerThread = new Thread(this::runLoop, "app-realtime");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        subscribed = false;
+        stopHeartbeat();
+        // TLS连接关闭时会发送close_notify，可能在主线程调用，交给线程池执行
+        AppExecutors.getInstance().housekeeping().execute(this::closeSocket);
+        if (readerThread != null) {
+            readerThread.interrupt();
+            readerThread = null;
+        }
+    }
+
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    private void runLoop() {
+        long reconnectDelay = INITIAL_RECONNECT_DELAY_MS;
+        while (running) {
+            try {
+                connect();
+                reconnectDelay = INITIAL_RECONNECT_DELAY_MS;
+                readLoop();
+                throw new EOFException("服务端关闭了连接");
+            } catch (Exception e) {
+                boolean wasSubscribed = subscribed;
+                subscribed = false;
+                stopHeartbeat();
+                closeSocket();
+                if (!running) {
+                    break;
+                }
+                Log.w(TAG, "Realtime连接断开: " + e.getMessage() + "，" + reconnectDelay + "ms 后重连");
+                try {
+                    listener.onDisconnected(e);
+                } catch (Exception callbackError) {
+                    Log.e(TAG, "断开回调异常", callbackError);
+                }
+                if (!wasSubscribed) {
+                    // 没有成功订阅过才增加退避，避免短暂断线后长时间停留在轮询
+                    reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MS);
+                }
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+        Log.d(TAG, "Realtime客户端已停止");
+    }
+
+    // ========== 连接与握手 ==========
+
+    private void connect() throws Exception {
+        URI uri = URI.create(supabaseUrl.trim());
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme()) || "wss".equalsIgnoreCase(uri.getScheme());
+        String host = uri.getHost();
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        String basePath = uri.getRawPath() != null ? uri.getRawPath().replaceAll("/+$", "") : "";
+        String path = basePath + "/realtime/v1/websocket?apikey="
+                + java.net.URLEncoder.encode(supabaseAnonKey, "UTF-8") + "&vsn=1.0.0";
+
+        Socket rawSocket = new Socket();
+        rawSocket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        Socket connected = rawSocket;
+        if (secure) {
+            SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                    .createSocket(rawSocket, host, port, true);
+            sslSocket.startHandshake();
+            // SSLSocketFactory不校验主机名，这里手动校验
+            if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+                sslSocket.close();
+                throw new IOException("证书主机名校验失败: " + host);
+            }
+            connected = sslSocket;
+        }
+        connected.setSoTimeout(READ_TIMEOUT_MS);
+        connected.setTcpNoDelay(true);
+        socket = connected;
+
+        WebSocketConnection opened = new WebSocketConnection(
+                new BufferedInputStream(connected.getInputStream()), connected.getOutputStream(), random);
+        opened.handshake(host, port, secure, path);
+        connection = opened;
+        Log.d(TAG, "websocket已连接: " + host);
+
+        startHeartbeat();
+        join();
+    }
+
+    // ========== Phoenix协议 ==========
+
+    private void join() throws IOException, JSONException {
+        JSONObject change = new JSONObject();
+        change.put("event", "INSERT");
+        change.put("schema", "public");
+        change.put("table", table);
+        if (filter != null && !filter.isEmpty()) {
+            change.put("filter", filter);
+        }
+
+        JSONObject config = new JSONObject();
+        config.put("postgres_changes", new org.json.JSONArray().put(change));
+
+        JSONObject payload = new JSONObject();
+        payload.put("config", config);
+        payload.put("access_token", supabaseAnonKey);
+
+        joinRef = nextRef();
+        sendPhoenix("realtime:" + table + ":" + (filter != null ? filter : "*"), "phx_join", payload, joinRef);
+    }
+
+    private void sendPhoenix(String topic, String event, JSONObject payload, String ref) throws IOException, JSONException {
+        JSONObject message = new JSONObject();
+        message.put("topic", topic);
+        message.put("event", event);
+        message.put("payload", payload);
+        message.put("ref", ref);
+        WebSocketConnection current = connection;
+        if (current == null) {
+            throw new IOException("连接未建立");
+        }
+        current.sendText(message.toString());
+    }
+
+    private String nextRef() {
+        return String.valueOf(refCounter.incrementAndGet());
+    }
+
+    private synchronized void startHeartbeat() {
+        stopHeartbeat();
+        heartbeatFuture = AppExecutors.getInstance().scheduler().scheduleAtFixedRate(() -> {
+            try {
+                sendPhoenix("phoenix", "heartbeat", new JSONObject(), nextRef());
+            } catch (Exception e) {
+                Log.w(TAG, "发送心跳失败: " + e.getMessage());
+                closeSocket();
+            }
+        }, HEARTBEAT_INTERVAL_MS, HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void stopHeartbeat() {
+        if (heartbeatFuture != null) {
+            heartbeatFuture.cancel(false);
+            heartbeatFuture = null;
+        }
+    }
+
+    private void handleText(String text) throws IOException {
+        JSONObject message;
+        try {
+            message = new JSONObject(text);
+        } catch (JSONException e) {
+            Log.w(TAG, "忽略无法解析的消息: " + text);
+            return;
+        }
+
+        String event = message.optString("event");
+        JSONObject payload = message.optJSONObject("payload");
+
+        switch (event) {
+            case "phx_reply":
+                if (joinRef != null && joinRef.equals(message.optString("ref"))) {
+                    String status = payload != null ? payload.optString("status") : "";
+                    if (!"ok".equals(status)) {
+                        throw new IOException("订阅被拒绝: " + payload);
+                    }
+                    subscribed = true;
+                    Log.d(TAG, "订阅成功: " + table + " " + filter);
+                    listener.onSubscribed();
+                }
+                break;
+            case "postgres_changes":
+                // 新版协议：payload.data.record
+                JSONObject data = payload != null ? payload.optJSONObject("data") : null;
+                if (data != null && "INSERT".equals(data.optString("type"))) {
+                    dispatchInsert(data.optJSONObject("record"));
+                }
+                break;
+            case "INSERT":
+                // 旧版协议：payload.record
+                dispatchInsert(payload != null ? payload.optJSONObject("record") : null);
+                break;
+            case "phx_error":
+            case "phx_close":
+                throw new IOException("频道已关闭: " + event);
+            default:
+                break;
+        }
+    }
+
+    private void dispatchInsert(JSONObject record) {
+        if (record == null) {
+            return;
+        }
+        try {
+            listener.onInsert(record);
+        } catch (Exception e) {
+            Log.e(TAG, "处理插入事件异常", e);
+        }
+    }
+
+    private void readLoop() throws IOException {
+        WebSocketConnection current = connection;
+        if (current == null) {
+            throw new IOException("连接未建立");
+        }
+        current.readMessages(this::handleText, () -> running);
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        socket = null;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                Log.w(TAG, "关闭socket失败: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.myapplication;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * 定时报告闹钟接收器
+ * 注册下一天的闹钟，并把本次任务交给消息监听服务执行（服务未运行时会被拉起）
+ */
+public class ReportAlarmReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "ReportAlarmReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        try {
+            if (!ReportScheduler.ACTION_REPORT_ALARM.equals(intent.getAction())) {
+                return;
+            }
+            String type = intent.getStringExtra(ReportScheduler.EXTRA_REPORT_TYPE);
+            Log.d(TAG, "收到定时任务闹钟: " + type);
+
+            // 先注册下一次，避免服务执行失败时中断闹钟链（到期提醒的下一次由服务重建定时器时注册）
+            if (!ReportScheduler.TYPE_DEADLINE_ALERT.equals(type)) {
+                new ReportScheduler(context).schedule(type);
+            }
+
+            Intent serviceIntent = new Intent(context, MessageListenerService.class);
+            serviceIntent.setAction(ReportScheduler.ACTION_REPORT_ALARM);
+            serviceIntent.putExtra(ReportScheduler.EXTRA_REPORT_TYPE, type);
+            context.startForegroundService(serviceIntent);
+        } catch (Exception e) {
+            Log.e(TAG, "处理定时任务闹钟失败", e);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.myapplication;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * 晨报、晚报和每日待办的定时调度
+ * 按配置的 morning_notify_time / evening_notify_time 注册一次性精确闹钟，到点由ReportAlarmReceiver拉起消息服务执行，
+ * 执行后再注册下一天的闹钟；配置变化时重新注册。心跳不再每分钟判断报告时间窗口
+ */
+public class ReportScheduler {
+
+    private static final String TAG = "ReportScheduler";
+
+    public static final String ACTION_REPORT_ALARM = "com.example.myapplication.REPORT_ALARM";
+    public static final String EXTRA_REPORT_TYPE = "report_type";
+
+    public static final String TYPE_MORNING_REPORT = "morning_report";
+    public static final String TYPE_EVENING_REPORT = "evening_report";
+    public static final String TYPE_DAILY_TODO = "daily_todo";
+    // 任务到期提醒的闹钟由DeadlineAlertScheduler按截止时间注册，不按天重复
+    public static final String TYPE_DEADLINE_ALERT = "deadline_alert";
+
+    // 每日待办在零点后稍等片刻生成，避开日期切换边界
+    private static final String DAILY_TODO_TIME = "00:01";
+
+    private final Context context;
+
+    public ReportScheduler(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * 按当前配置注册所有定时任务（重复注册会替换之前的闹钟）
+     */
+    public void scheduleAll() {
+        schedule(TYPE_MORNING_REPORT);
+        schedule(TYPE_EVENING_REPORT);
+        schedule(TYPE_DAILY_TODO);
+    }
+
+    /**
+     * 注册指定类型的下一次闹钟：今天的时间未到则在今天，否则在明天
+     */
+    public void schedule(String type) {
+        try {
+            String time = timeOf(type);
+            long triggerAtMillis = nextTriggerTime(time, System.currentTimeMillis());
+
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            PendingIntent pendingIntent = createPendingIntent(type);
+
+            // Android 12+ 需要检查精确闹钟权限，没有权限时退回到非精确闹钟（允许在doze时触发）
+            if (alarmManager.canScheduleExactAlarms()) {
+                alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+            } else {
+                alarmManager.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAtMillis, pendingIntent);
+            }
+
+            Log.d(TAG, "已设置定时任务: " + type + " (配置时间: " + time + ", 触发时间: "
+                    + new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm", java.util.Locale.getDefault())
+                        .format(new java.util.Date(triggerAtMillis)) + ")");
+        } catch (Exception e) {
+            Log.e(TAG, "设置定时任务失败: " + type, e);
+        }
+    }
+
+    /**
+     * 取消所有定时任务
+     */
+    public void cancelAll() {
+        try {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.cancel(createPendingIntent(TYPE_MORNING_REPORT));
+            alarmManager.cancel(createPendingIntent(TYPE_EVENING_REPORT));
+            alarmManager.cancel(createPendingIntent(TYPE_DAILY_TODO));
+            Log.d(TAG, "已取消所有定时任务");
+        } catch (Exception e) {
+            Log.e(TAG, "取消定时任务失败", e);
+        }
+    }
+
+    private String timeOf(String type) {
+        AppSettings settings = AppSettings.get(context);
+        if (TYPE_MORNING_REPORT.equals(type)) {
+            return settings.morningNotifyTime;
+        } else if (TYPE_EVENING_REPORT.equals(type)) {
+            return settings.eveningNotifyTime;
+        }
+        return DAILY_TODO_TIME;
+    }
+
+    private PendingIntent createPendingIntent(String type) {
+        Intent intent = new Intent(context, ReportAlarmReceiver.class);
+        intent.setAction(ACTION_REPORT_ALARM);
+        intent.putExtra(EXTRA_REPORT_TYPE, type);
+        return PendingIntent.getBroadcast(
+            context,
+            requestCodeOf(type),
+            intent,
+            PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+    }
+
+    private static int requestCodeOf(String type) {
+        if (TYPE_MORNING_REPORT.equals(type)) {
+            return 2001;
+        } else if (TYPE_EVENING_REPORT.equals(type)) {
+            return 2002;
+        }
+        return 2003;
+    }
+
+    /**
+     * 计算 HH:mm 在now之后的下一次触发时间（格式错误时按09:00处理）
+     */
+    static long nextTriggerTime(String time, long now) {
+        int hour = 9;
+        int minute = 0;
+        try {
+            String[] parts = time.split(":");
+            hour = Integer.parseInt(parts[0].trim());
+            minute = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 0;
+        } catch (Exception e) {
+            Log.e(TAG, "解析时间失败，使用默认值: " + time, e);
+        }
+
+        java.util.Calendar calendar = java.util.Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        calendar.set(java.util.Calendar.HOUR_OF_DAY, hour);
+        calendar.set(java.util.Calendar.MINUTE, minute);
+        calendar.set(java.util.Calendar.SECOND, 0);
+        calendar.set(java.util.Calendar.MILLISECOND, 0);
+        if (calendar.getTimeInMillis() <= now) {
+            calendar.add(java.util.Calendar.DAY_OF_MONTH, 1);
+        }
+        return calendar.getTimeInMillis();
+    }
+}
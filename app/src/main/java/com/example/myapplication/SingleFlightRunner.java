@@ -0,0 +1,180 @@
+package com.example.myapplication;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 同名后台任务的单飞执行
+ * 同一任务正在执行时不再启动第二份：期间的触发被合并为结束后的一次补跑，
+ * 网络慢时不会堆积多个相同的请求。各任务的跳过、合并次数和耗时可通过getStats()查看
+ */
+public class SingleFlightRunner {
+
+    private static final String TAG = "SingleFlightRunner";
+
+    private static volatile SingleFlightRunner instance;
+
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private static class Job {
+        boolean inFlight;
+        boolean queued;
+        boolean rerunRequested;
+
+        long started;
+        long skipped;
+        long coalesced;
+        long failed;
+        long rejected;
+        long lastDurationMs;
+        long maxDurationMs;
+    }
+
+    public static SingleFlightRunner getInstance() {
+        if (instance == null) {
+            synchronized (SingleFlightRunner.class) {
+                if (instance == null) {
+                    instance = new SingleFlightRunner();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private SingleFlightRunner() {
+    }
+
+    /**
+     * 在当前线程执行任务；同名任务正在执行时立即返回skippedResult，并让正在执行的任务结束后补跑一次
+     */
+    public <T> T run(String name, Callable<T> task, T skippedResult) {
+        Job job = jobs.computeIfAbsent(name, key -> new Job());
+        synchronized (job) {
+            if (job.inFlight) {
+                job.skipped++;
+                job.rerunRequested = true;
+                Log.d(TAG, name + " 正在执行，本次触发合并到结束后的补跑");
+                return skippedResult;
+            }
+            job.inFlight = true;
+        }
+
+        T result = skippedResult;
+        boolean first = true;
+        try {
+            while (true) {
+                long start = SystemClock.elapsedRealtime();
+                try {
+                    T value = task.call();
+                    // 返回调用方自己这一轮的结果，补跑是替被跳过的触发执行的
+                    if (first) {
+                        result = value;
+                    }
+                } catch (Exception e) {
+                    synchronized (job) {
+                        job.failed++;
+                    }
+                    Log.e(TAG, name + " 执行异常", e);
+                }
+                long duration = SystemClock.elapsedRealtime() - start;
+                first = false;
+
+                synchronized (job) {
+                    job.started++;
+                    job.lastDurationMs = duration;
+                    job.maxDurationMs = Math.max(job.maxDurationMs, duration);
+                    if (!job.rerunRequested) {
+                        break;
+                    }
+                    job.rerunRequested = false;
+                    job.coalesced++;
+                }
+            }
+        } finally {
+            synchronized (job) {
+                job.inFlight = false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在当前线程执行任务
+     * @return 是否执行（同名任务正在执行时返回false）
+     */
+    public boolean run(String name, Runnable task) {
+        return run(name, () -> {
+            task.run();
+            return true;
+        }, false);
+    }
+
+    /**
+     * 提交到指定线程池执行；已有同名任务在排队时直接合并，正在执行时合并为结束后的补跑
+     */
+    public void submit(String name, Executor executor, Runnable task) {
+        Job job = jobs.computeIfAbsent(name, key -> new Job());
+        synchronized (job) {
+            if (job.queued) {
+                job.skipped++;
+                return;
+            }
+            if (job.inFlight) {
+                job.skipped++;
+                job.rerunRequested = true;
+                return;
+            }
+            job.queued = true;
+        }
+        try {
+            executor.execute(() -> {
+                synchronized (job) {
+                    job.queued = false;
+                }
+                run(name, task);
+            });
+        } catch (RejectedExecutionException e) {
+            // 未能入队时清除排队标记，否则之后的提交都会被当作已在排队而合并掉
+            synchronized (job) {
+                job.queued = false;
+                job.rejected++;
+            }
+            Log.w(TAG, name + " 提交被线程池拒绝", e);
+        }
+    }
+
+    /**
+     * 各任务的执行、跳过、合并次数和耗时
+     */
+    public JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            for (java.util.Map.Entry<String, Job> entry : jobs.entrySet()) {
+                Job job = entry.getValue();
+                JSONObject jobStats = new JSONObject();
+                synchronized (job) {
+                    jobStats.put("inFlight", job.inFlight);
+                    jobStats.put("started", job.started);
+                    jobStats.put("skipped", job.skipped);
+                    jobStats.put("coalesced", job.coalesced);
+                    jobStats.put("failed", job.failed);
+                    jobStats.put("rejected", job.rejected);
+                    jobStats.put("lastDurationMs", job.lastDurationMs);
+                    jobStats.put("maxDurationMs", job.maxDurationMs);
+                }
+                stats.put(entry.getKey(), jobStats);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "生成任务统计失败", e);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Supabase HTTP客户端
+ * 全应用共享的PostgREST请求入口：复用keep-alive连接、协商gzip、统一超时，响应体以流的形式交给调用方
+ */
+public class SupabaseHttpClient {
+
+    private static final String TAG = "SupabaseHttpClient";
+
+    private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+    private static final int READ_TIMEOUT_MS = 20 * 1000;
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    private static volatile SupabaseHttpClient instance;
+
+    /**
+     * 获取全局唯一的客户端实例
+     */
+    public static SupabaseHttpClient getInstance() {
+        if (instance == null) {
+            synchronized (SupabaseHttpClient.class) {
+                if (instance == null) {
+                    instance = new SupabaseHttpClient();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private SupabaseHttpClient() {
+        // HttpURLConnection底层按host维护连接池，这里确保keep-alive开启并放宽空闲连接上限
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+    }
+
+    /**
+     * 执行GET请求
+     */
+    public Response get(String url, String anonKey) throws IOException {
+        return execute("GET", url, anonKey, null, null);
+    }
+
+    /**
+     * 执行带JSON请求体的请求（POST/PATCH/DELETE）
+     * @param prefer PostgREST的Prefer头，为null时不设置
+     */
+    public Response send(String method, String url, String anonKey, String jsonBody, String prefer) throws IOException {
+        return execute(method, url, anonKey, jsonBody, prefer);
+    }
+
+    private Response execute(String method, String url, String anonKey, String jsonBody, String prefer) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("apikey", anonKey);
+        connection.setRequestProperty("Authorization", "Bearer " + anonKey);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("Accept", "application/json");
+        // 手动声明gzip后系统不会再透明解压，由Response.body()负责解压
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (prefer != null) {
+            connection.setRequestProperty("Prefer", prefer);
+        }
+
+        try {
+            if (jsonBody != null) {
+                byte[] payload = jsonBody.getBytes(StandardCharsets.UTF_8);
+                connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(payload.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(payload);
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            return new Response(connection, responseCode);
+        } catch (IOException e) {
+            // 请求阶段失败时连接状态未知，直接断开，不放回连接池
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * HTTP响应
+     * 使用完毕必须close()：剩余字节会被读完，底层连接才能回到keep-alive池中复用
+     */
+    public static class Response implements Closeable {
+        private final HttpURLConnection connection;
+        private final int code;
+        private InputStream stream;
+
+        Response(HttpURLConnection connection, int code) {
+            this.connection = connection;
+            this.code = code;
+        }
+
+        public int code() {
+            return code;
+        }
+
+        public boolean isSuccessful() {
+            return code >= 200 && code < 300;
+        }
+
+        /**
+         * 响应体输入流（已处理gzip），失败响应返回错误流
+         */
+        public InputStream body() throws IOException {
+            if (stream == null) {
+                InputStream raw = isSuccessful() ? connection.getInputStream() : connection.getErrorStream();
+                if (raw == null || code == HttpURLConnection.HTTP_NO_CONTENT) {
+                    raw = raw != null ? raw : new ByteArrayInputStream(new byte[0]);
+                    stream = raw;
+                } else if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                    stream = new GZIPInputStream(raw);
+                } else {
+                    stream = raw;
+                }
+            }
+            return stream;
+        }
+
+        /**
+         * 读取完整响应体为字符串（仅用于小响应，如错误信息、id列表）
+         */
+        public String bodyString() throws IOException {
+            InputStream in = body();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                buffer.write(chunk, 0, read);
+            }
+            return buffer.toString(StandardCharsets.UTF_8.name());
+        }
+
+        @Override
+        public void close() {
+            try {
+                InputStream in = body();
+                byte[] chunk = new byte[1024];
+                while (in.read(chunk) != -1) {
+                    // 读完剩余数据
+                }
+                in.close();
+            } catch (IOException e) {
+                Log.w(TAG, "关闭响应流失败，断开连接", e);
+                connection.disconnect();
+            }
+        }
+    }
+}
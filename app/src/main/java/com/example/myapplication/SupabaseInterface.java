@@ -9,15 +9,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Supabase数据库接口类 - 提供给JavaScript调用的Supabase操作方法
@@ -26,18 +19,17 @@ public class SupabaseInterface {
 
     private static final String TAG = "SupabaseInterface";
     private Context context;
-    private ExecutorService executorService;
+    private final AppExecutors executors = AppExecutors.getInstance();
     private android.webkit.WebView webView; // 用于刷新前端页面
+    private final SupabaseHttpClient httpClient = SupabaseHttpClient.getInstance();
 
     public SupabaseInterface(Context context) {
         this.context = context;
-        this.executorService = Executors.newCachedThreadPool();
         this.webView = null;
     }
 
     public SupabaseInterface(Context context, android.webkit.WebView webView) {
         this.context = context;
-        this.executorService = Executors.newCachedThreadPool();
         this.webView = webView;
     }
 
@@ -46,55 +38,98 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public CompletableFuture<String> getUnreadMessagesAsync(String userId) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-                String supabaseUrl = prefs.getString("supabase_url", "");
-                String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-                String supabaseUserId = prefs.getString("supabase_user_id", "");
+        return CompletableFuture.supplyAsync(
+                () -> queryUnreadMessages(userId, false, null, SupabaseJsonDecoder::readString, "[]"), executors.interactive());
+    }
 
-                if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty() || supabaseUserId.isEmpty()) {
-                    Log.w(TAG, "Supabase配置不完整");
-                    return "[]";
+    /**
+     * 获取用户的未读消息列表，包含系统通知消息（sender_id=system）
+     * 服务轮询只发这一个请求，由调用方按senderId区分系统通知和用户消息
+     * @return 消息列表，请求失败时返回null（与"没有未读消息"区分）
+     */
+    public java.util.List<SimpleMessage> getUnreadMessageList(String userId) {
+        return queryUnreadMessages(userId, true, null, SupabaseJsonDecoder::readMessages, null);
+    }
+
+    /**
+     * 按id升序分页获取水位之后的未读消息（包含系统通知消息），最多返回limit条
+     * 除 id > watermarkId 外，还会重新查询 created_at >= createdSince 的行以及extraIds指定的行：
+     * messages.id由所有写入方共享，晚提交的事务可能拿到比水位更小的id，重复的行由调用方去重
+     * @param pageAfterId 翻页游标，只返回id大于它的行（第一页传0）
+     * @param createdSince 重叠窗口起点（UTC ISO时间，为null时不查询重叠窗口）
+     * @param extraIds 需要额外确认的消息id（如Realtime推送过来的id），可为空
+     * @return 消息列表，请求失败时返回null
+     */
+    public java.util.List<SimpleMessage> getUnreadMessageListAfter(String userId, long pageAfterId, long watermarkId,
+                                                                  String createdSince, java.util.Collection<Long> extraIds,
+                                                                  int limit) {
+        StringBuilder cursor = new StringBuilder("&id=gt.").append(pageAfterId)
+                .append("&and=(or(id.gt.").append(watermarkId);
+        if (createdSince != null) {
+            cursor.append(",created_at.gte.").append(java.net.URLEncoder.encode(
+                    "\"" + createdSince + "\"", java.nio.charset.StandardCharsets.UTF_8));
+        }
+        if (extraIds != null && !extraIds.isEmpty()) {
+            cursor.append(",id.in.(");
+            boolean first = true;
+            for (Long id : extraIds) {
+                if (!first) {
+                    cursor.append(',');
                 }
+                cursor.append(id);
+                first = false;
+            }
+            cursor.append(')');
+        }
+        cursor.append("))&order=id.asc&limit=").append(limit);
+        return queryUnreadMessages(userId, true, cursor.toString(), SupabaseJsonDecoder::readMessages, null);
+    }
 
-                // 构建查询URL：获取当前用户作为接收人的未读消息，且发送人不是自己
-                String queryUrl = supabaseUrl + "/rest/v1/messages" +
-                                "?user_id=eq." + supabaseUserId +
-                                "&receiver_id=eq." + userId +
-                                "&is_read=eq.false" +
-                                "&sender_id=neq." + userId +
-                                "&order=created_at.desc";
-
-                URL url = new URL(queryUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("GET");
-                connection.setRequestProperty("apikey", supabaseAnonKey);
-                connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-                connection.setRequestProperty("Content-Type", "application/json");
-
-                int responseCode = connection.getResponseCode();
-                if (responseCode == HttpURLConnection.HTTP_OK) {
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        response.append(line);
-                    }
-                    reader.close();
+    /**
+     * 查询未读消息，响应体交给reader解码
+     * @param includeSystem 是否同时返回系统通知消息（不限定user_id）
+     * @param cursorParams 游标条件和排序（为null时返回全部未读消息，按创建时间倒序）
+     * @param fallback 配置不完整或请求失败时的返回值
+     */
+    private <T> T queryUnreadMessages(String userId, boolean includeSystem, String cursorParams,
+                                      SupabaseJsonDecoder.BodyReader<T> reader, T fallback) {
+        try {
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
 
-                    String result = response.toString();
+            if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty() || supabaseUserId.isEmpty()) {
+                Log.w(TAG, "Supabase配置不完整");
+                return fallback;
+            }
+
+            // 构建查询URL：获取当前用户作为接收人的未读消息，且发送人不是自己
+            // 系统通知消息不限定user_id，与用户消息合并在一次请求中返回
+            String ownerFilter = includeSystem
+                    ? "?or=(user_id.eq." + supabaseUserId + ",sender_id.eq.system)"
+                    : "?user_id=eq." + supabaseUserId;
+            String queryUrl = supabaseUrl + "/rest/v1/messages" +
+                            ownerFilter +
+                            "&receiver_id=eq." + userId +
+                            "&is_read=eq.false" +
+                            "&sender_id=neq." + userId +
+                            (cursorParams != null ? cursorParams : "&order=created_at.desc");
+
+            try (SupabaseHttpClient.Response response = httpClient.get(queryUrl, supabaseAnonKey)) {
+                if (response.code() == HttpURLConnection.HTTP_OK) {
+                    T result = reader.read(response.body());
                     Log.d(TAG, "获取未读消息成功，用户: " + userId);
                     return result;
                 } else {
-                    Log.e(TAG, "获取未读消息失败，响应码: " + responseCode);
-                    return "[]";
+                    Log.e(TAG, "获取未读消息失败，响应码: " + response.code());
+                    return fallback;
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "获取未读消息异常", e);
-                return "[]";
             }
-        }, executorService);
+        } catch (Exception e) {
+            Log.e(TAG, "获取未读消息异常", e);
+            return fallback;
+        }
     }
 
     /**
@@ -120,6 +155,7 @@ public class SupabaseInterface {
                 JSONObject messageObj = jsonArray.getJSONObject(i);
                 SimpleMessage message = new SimpleMessage();
                 message.id = messageObj.optLong("id");
+                message.taskId = messageObj.optString("task_id");
                 message.senderId = messageObj.optString("sender_id");
                 message.receiverId = messageObj.optString("receiver_id");
                 message.messageType = messageObj.optString("message_type");
@@ -139,54 +175,11 @@ public class SupabaseInterface {
 
     /**
      * 异步标记消息为已读
+     * 回执进入合并队列，短时间内的多条已读会合并为一次PATCH写入
      */
     @JavascriptInterface
     public CompletableFuture<Boolean> markMessageAsReadAsync(long messageId) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-                String supabaseUrl = prefs.getString("supabase_url", "");
-                String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-
-                if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
-                    Log.w(TAG, "Supabase配置不完整");
-                    return false;
-                }
-
-                String updateUrl = supabaseUrl + "/rest/v1/messages?id=eq." + messageId;
-
-                URL url = new URL(updateUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("PATCH");
-                connection.setRequestProperty("apikey", supabaseAnonKey);
-                connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
-
-                // 构建更新数据
-                JSONObject updateData = new JSONObject();
-                updateData.put("is_read", true);
-                updateData.put("read_at", getCurrentLocalTimestamp());
-
-                OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-                writer.write(updateData.toString());
-                writer.close();
-
-                int responseCode = connection.getResponseCode();
-                boolean success = responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NO_CONTENT;
-
-                if (success) {
-                    Log.d(TAG, "消息已标记为已读: " + messageId);
-                } else {
-                    Log.e(TAG, "标记消息为已读失败，响应码: " + responseCode);
-                }
-
-                return success;
-            } catch (Exception e) {
-                Log.e(TAG, "标记消息为已读异常", e);
-                return false;
-            }
-        }, executorService);
+        return ReadReceiptQueue.getInstance(context).enqueue(messageId);
     }
 
     /**
@@ -204,6 +197,7 @@ public class SupabaseInterface {
             SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
             prefs.edit().putString("current_user_id", userId.trim()).apply();
             prefs.edit().putString("supabase_user_id", userId.trim()).apply(); // 同时更新Supabase用户ID
+            AppSettings.reload(context);
 
             Log.d(TAG, "用户ID已更新: " + userId);
             return true;
@@ -219,8 +213,8 @@ public class SupabaseInterface {
     @JavascriptInterface
     public String getCurrentUserId() {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            return prefs.getString("current_user_id", "");
+            AppSettings settings = AppSettings.get(context);
+            return settings.currentUserIdOr("");
         } catch (Exception e) {
             Log.e(TAG, "获取当前用户ID失败", e);
             return "";
@@ -232,8 +226,8 @@ public class SupabaseInterface {
      */
     public String getSupabaseUrl() {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            return prefs.getString("supabase_url", "");
+            AppSettings settings = AppSettings.get(context);
+            return settings.supabaseUrl;
         } catch (Exception e) {
             Log.e(TAG, "获取Supabase URL失败", e);
             return "";
@@ -245,8 +239,8 @@ public class SupabaseInterface {
      */
     public String getSupabaseAnonKey() {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            return prefs.getString("supabase_anon_key", "");
+            AppSettings settings = AppSettings.get(context);
+            return settings.supabaseAnonKey;
         } catch (Exception e) {
             Log.e(TAG, "获取Supabase Anon Key失败", e);
             return "";
@@ -258,8 +252,8 @@ public class SupabaseInterface {
      */
     public String getSupabaseUserId() {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            return prefs.getString("supabase_user_id", "");
+            AppSettings settings = AppSettings.get(context);
+            return settings.supabaseUserId;
         } catch (Exception e) {
             Log.e(TAG, "获取Supabase User ID失败", e);
             return "";
@@ -272,9 +266,9 @@ public class SupabaseInterface {
     @JavascriptInterface
     public String getReportTimeSettings() {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            String morningTime = prefs.getString("morning_notify_time", "09:00");
-            String eveningTime = prefs.getString("evening_notify_time", "18:00");
+            AppSettings settings = AppSettings.get(context);
+            String morningTime = settings.morningNotifyTime;
+            String eveningTime = settings.eveningNotifyTime;
 
             JSONObject result = new JSONObject();
             result.put("morningTime", morningTime);
@@ -314,6 +308,7 @@ public class SupabaseInterface {
             editor.putString("evening_notify_time", eveningTime.trim());
 
             boolean success = editor.commit();
+            AppSettings.reload(context);
             if (success) {
                 Log.d(TAG, "报告时间设置已保存: 晨报=" + morningTime + ", 晚报=" + eveningTime);
             } else {
@@ -352,6 +347,7 @@ public class SupabaseInterface {
             }
 
             boolean success = editor.commit();
+            AppSettings.reload(context);
             if (success) {
                 Log.d(TAG, "数据库配置同步成功");
             } else {
@@ -449,10 +445,10 @@ public class SupabaseInterface {
     public CompletableFuture<Boolean> cleanupReadMessagesAsync(int daysOld) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-                String supabaseUrl = prefs.getString("supabase_url", "");
-                String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-                String supabaseUserId = prefs.getString("supabase_user_id", "");
+                AppSettings settings = AppSettings.get(context);
+                String supabaseUrl = settings.supabaseUrl;
+                String supabaseAnonKey = settings.supabaseAnonKey;
+                String supabaseUserId = settings.supabaseUserId;
 
                 if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty() || supabaseUserId.isEmpty()) {
                     Log.w(TAG, "Supabase配置不完整，跳过清理");
@@ -470,14 +466,10 @@ public class SupabaseInterface {
                                 "&is_read=eq.true" +
                                 "&created_at.lt=" + cutoffDate;
 
-                URL url = new URL(deleteUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("DELETE");
-                connection.setRequestProperty("apikey", supabaseAnonKey);
-                connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-                connection.setRequestProperty("Content-Type", "application/json");
-
-                int responseCode = connection.getResponseCode();
+                int responseCode;
+                try (SupabaseHttpClient.Response response = httpClient.send("DELETE", deleteUrl, supabaseAnonKey, null, null)) {
+                    responseCode = response.code();
+                }
                 boolean success = responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NO_CONTENT;
 
                 if (success) {
@@ -491,7 +483,7 @@ public class SupabaseInterface {
                 Log.e(TAG, "清理已读消息异常", e);
                 return false;
             }
-        }, executorService);
+        }, executors.housekeeping());
     }
 
     /**
@@ -535,15 +527,20 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getTodayTasksByField(String userId, String dateField) {
+        return queryTodayTasks(userId, dateField, TaskProjection.FULL, SupabaseJsonDecoder::readString, "[]");
+    }
+
+    private <T> T queryTodayTasks(String userId, String dateField, TaskProjection projection,
+                                  SupabaseJsonDecoder.BodyReader<T> reader, T fallback) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
 
             if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
                 Log.w(TAG, "Supabase配置不完整");
-                return "[]";
+                return fallback;
             }
 
             // 获取今日日期（本地时间格式：YYYY-MM-DD）
@@ -568,13 +565,14 @@ public class SupabaseInterface {
                             "?user_id=eq." + supabaseUserId +
                             "&or=(assignee.ilike.%25" + java.net.URLEncoder.encode(userId, "UTF-8") + "%25,assignee.eq." + java.net.URLEncoder.encode(userId, "UTF-8") + ")" +
                             dateCondition +
+                            projection.toQueryParam() +
                             "&order=" + dateField + ".asc";
 
             Log.d(TAG, "获取今日任务查询URL: " + queryUrl);
-            return executeGetRequest(queryUrl, supabaseAnonKey);
+            return executeGetRequest(queryUrl, supabaseAnonKey, reader, fallback);
         } catch (Exception e) {
             Log.e(TAG, "获取今日任务失败", e);
-            return "[]";
+            return fallback;
         }
     }
 
@@ -607,15 +605,20 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getTodayCompletedTasksByField(String userId, String dateField) {
+        return queryTodayCompletedTasks(userId, dateField, TaskProjection.FULL, SupabaseJsonDecoder::readString, "[]");
+    }
+
+    private <T> T queryTodayCompletedTasks(String userId, String dateField, TaskProjection projection,
+                                           SupabaseJsonDecoder.BodyReader<T> reader, T fallback) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
 
             if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
                 Log.w(TAG, "Supabase配置不完整");
-                return "[]";
+                return fallback;
             }
 
             // 获取今日日期（本地时间格式：YYYY-MM-DD）
@@ -639,13 +642,14 @@ public class SupabaseInterface {
                             "&or=(assignee.ilike.%25" + java.net.URLEncoder.encode(userId, "UTF-8") + "%25,assignee.eq." + java.net.URLEncoder.encode(userId, "UTF-8") + ")" +
                             dateCondition +
                             "&completed=eq.true" +
+                            projection.toQueryParam() +
                             "&order=" + dateField + ".desc";
 
             Log.d(TAG, "获取今日完成任务查询URL: " + queryUrl);
-            return executeGetRequest(queryUrl, supabaseAnonKey);
+            return executeGetRequest(queryUrl, supabaseAnonKey, reader, fallback);
         } catch (Exception e) {
             Log.e(TAG, "获取今日完成任务失败", e);
-            return "[]";
+            return fallback;
         }
     }
 
@@ -662,15 +666,20 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getTodayPendingTasksByField(String userId, String dateField) {
+        return queryTodayPendingTasks(userId, dateField, TaskProjection.FULL, SupabaseJsonDecoder::readString, "[]");
+    }
+
+    private <T> T queryTodayPendingTasks(String userId, String dateField, TaskProjection projection,
+                                         SupabaseJsonDecoder.BodyReader<T> reader, T fallback) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
 
             if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
                 Log.w(TAG, "Supabase配置不完整");
-                return "[]";
+                return fallback;
             }
 
             // 获取今日日期（本地时间格式：YYYY-MM-DD）
@@ -694,13 +703,14 @@ public class SupabaseInterface {
                             "&or=(assignee.ilike.%25" + java.net.URLEncoder.encode(userId, "UTF-8") + "%25,assignee.eq." + java.net.URLEncoder.encode(userId, "UTF-8") + ")" +
                             dateCondition +
                             "&completed=eq.false" +
+                            projection.toQueryParam() +
                             "&order=" + dateField + ".asc";
 
             Log.d(TAG, "获取今日待完成任务查询URL: " + queryUrl);
-            return executeGetRequest(queryUrl, supabaseAnonKey);
+            return executeGetRequest(queryUrl, supabaseAnonKey, reader, fallback);
         } catch (Exception e) {
             Log.e(TAG, "获取今日待完成任务失败", e);
-            return "[]";
+            return fallback;
         }
     }
 
@@ -709,14 +719,19 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getUpcomingDeadlineTasks(String userId) {
+        return queryUpcomingDeadlineTasks(userId, TaskProjection.FULL, SupabaseJsonDecoder::readString, "[]");
+    }
+
+    private <T> T queryUpcomingDeadlineTasks(String userId, TaskProjection projection,
+                                             SupabaseJsonDecoder.BodyReader<T> reader, T fallback) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
 
             if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
                 Log.w(TAG, "Supabase配置不完整");
-                return "[]";
+                return fallback;
             }
 
             // 获取当前本地时间和未来24小时的时间
@@ -732,7 +747,7 @@ public class SupabaseInterface {
             Log.d(TAG, "查询即将到期任务时间范围: " + nowStr + " 到 " + next24HoursStr);
 
             // 获取Supabase用户ID用于数据库查询
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
+            String supabaseUserId = settings.supabaseUserId;
 
             // 构建查询URL：获取即将到期任务（assignee字段可能包含多个用户ID，用逗号分割）
             // 使用ilike操作符匹配包含指定用户ID的逗号分割字符串
@@ -742,12 +757,13 @@ public class SupabaseInterface {
                             "&completed=eq.false" +
                             "&deadline=gte." + nowStr +
                             "&deadline=lte." + next24HoursStr +
+                            projection.toQueryParam() +
                             "&order=deadline.asc";
 
-            return executeGetRequest(queryUrl, supabaseAnonKey);
+            return executeGetRequest(queryUrl, supabaseAnonKey, reader, fallback);
         } catch (Exception e) {
             Log.e(TAG, "获取即将到期任务失败", e);
-            return "[]";
+            return fallback;
         }
     }
 
@@ -756,14 +772,19 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getOverdueTasks(String userId) {
+        return queryOverdueTasks(userId, TaskProjection.FULL, SupabaseJsonDecoder::readString, "[]");
+    }
+
+    private <T> T queryOverdueTasks(String userId, TaskProjection projection,
+                                    SupabaseJsonDecoder.BodyReader<T> reader, T fallback) {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
 
             if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
                 Log.w(TAG, "Supabase配置不完整");
-                return "[]";
+                return fallback;
             }
 
             // 获取当前本地时间（不带时区标识）
@@ -775,7 +796,7 @@ public class SupabaseInterface {
             Log.d(TAG, "查询逾期任务，当前时间: " + nowStr);
 
             // 获取Supabase用户ID用于数据库查询
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
+            String supabaseUserId = settings.supabaseUserId;
 
             // 构建查询URL：获取逾期任务（assignee字段可能包含多个用户ID，用逗号分割）
             // 使用ilike操作符匹配包含指定用户ID的逗号分割字符串
@@ -784,12 +805,13 @@ public class SupabaseInterface {
                             "&or=(assignee.ilike.%25" + java.net.URLEncoder.encode(userId, "UTF-8") + "%25,assignee.eq." + java.net.URLEncoder.encode(userId, "UTF-8") + ")" +
                             "&completed=eq.false" +
                             "&deadline=lt." + nowStr +
+                            projection.toQueryParam() +
                             "&order=deadline.asc";
 
-            return executeGetRequest(queryUrl, supabaseAnonKey);
+            return executeGetRequest(queryUrl, supabaseAnonKey, reader, fallback);
         } catch (Exception e) {
             Log.e(TAG, "获取逾期任务失败", e);
-            return "[]";
+            return fallback;
         }
     }
 
@@ -804,6 +826,7 @@ public class SupabaseInterface {
                 JSONObject taskObj = jsonArray.getJSONObject(i);
                 SimpleMessage message = new SimpleMessage();
                 message.id = taskObj.optLong("id");
+                message.taskId = taskObj.optString("id");
                 message.title = taskObj.optString("title", "未命名任务");
                 message.content = taskObj.optString("description", "");
                 message.senderId = taskObj.optString("user_id", "");
@@ -825,7 +848,6 @@ public class SupabaseInterface {
         java.util.List<DetailedTask> tasks = new java.util.ArrayList<>();
         try {
             JSONArray jsonArray = new JSONArray(tasksJson);
-            java.util.Date currentTime = new java.util.Date();
 
             for (int i = 0; i < jsonArray.length(); i++) {
                 JSONObject taskObj = jsonArray.getJSONObject(i);
@@ -833,6 +855,7 @@ public class SupabaseInterface {
 
                 // 基本信息
                 task.id = taskObj.optLong("id");
+                task.taskId = taskObj.optString("id");
                 task.userId = taskObj.optString("user_id", "");
                 task.title = taskObj.optString("title", "未命名任务");
                 task.description = taskObj.optString("description", "");
@@ -853,25 +876,186 @@ public class SupabaseInterface {
                 task.notesImages = taskObj.optString("notes_images", "[]");
                 task.attachments = taskObj.optString("attachments", "");
 
-                // 计算格式化字段
-                task.formattedPriority = formatPriority(task.priority);
-                task.formattedStatus = formatStatus(task.status, task.completed);
-                task.formattedDate = formatDateTime(task.date);
-                task.formattedDeadline = formatDateTime(task.deadline);
-                task.timeRemaining = calculateTimeRemaining(task.deadline, currentTime);
-                task.isOverdue = calculateIsOverdue(task.deadline, currentTime, task.completed);
-                task.isDueToday = calculateIsDueToday(task.deadline);
-                task.isDueSoon = calculateIsDueSoon(task.deadline, currentTime);
-                task.completionPercentage = task.completed ? 100 : 0;
-
                 tasks.add(task);
             }
         } catch (JSONException e) {
             Log.e(TAG, "解析详细任务JSON失败", e);
         }
+        return fillComputedFields(tasks);
+    }
+
+    /**
+     * 计算任务的格式化字段（优先级、状态、剩余时间等）
+     */
+    private java.util.List<DetailedTask> fillComputedFields(java.util.List<DetailedTask> tasks) {
+        java.util.Date currentTime = new java.util.Date();
+        for (DetailedTask task : tasks) {
+            task.formattedPriority = formatPriority(task.priority);
+            task.formattedStatus = formatStatus(task.status, task.completed);
+            task.formattedDate = formatDateTime(task.date);
+            task.formattedDeadline = formatDateTime(task.deadline);
+            task.timeRemaining = calculateTimeRemaining(task.deadline, currentTime);
+            task.isOverdue = calculateIsOverdue(task.deadline, currentTime, task.completed);
+            task.isDueToday = calculateIsDueToday(task.deadline);
+            task.isDueSoon = calculateIsDueSoon(task.deadline, currentTime);
+            task.completionPercentage = task.completed ? 100 : 0;
+        }
         return tasks;
     }
 
+    /**
+     * 从响应流解码详细任务并计算格式化字段
+     */
+    private java.util.List<DetailedTask> readTasksDetailed(java.io.InputStream in) throws java.io.IOException {
+        return fillComputedFields(SupabaseJsonDecoder.readTasksDetailed(in));
+    }
+
+    // ========== 直接解码为模型的任务查询（供服务和统计使用，不经过中间JSON字符串） ==========
+
+    /**
+     * 今日任务（早报使用，优先查询本地副本，副本不可用时使用REPORT投影远程查询）
+     * @return 任务列表，远程查询失败时返回null（与"今天没有任务"区分）
+     */
+    public java.util.List<SimpleMessage> getTodayTaskMessages(String userId) {
+        if (useLocalReplica()) {
+            String today = todayDate();
+            return toTaskMessages(TaskSyncManager.getInstance(context).replica()
+                    .getTasksDueBetween(userId, today + "T00:00:00", getNextDay(today) + "T00:00:00"));
+        }
+        return queryTodayTasks(userId, "deadline", TaskProjection.REPORT,
+                               SupabaseJsonDecoder::readTasksAsMessages, null);
+    }
+
+    /**
+     * 今日已完成任务（晚报使用，优先查询本地副本）
+     * @return 任务列表，远程查询失败时返回null
+     */
+    public java.util.List<SimpleMessage> getTodayCompletedTaskMessages(String userId) {
+        if (useLocalReplica()) {
+            String today = todayDate();
+            return toTaskMessages(TaskSyncManager.getInstance(context).replica()
+                    .getTasksCompletedBetween(userId, today + "T00:00:00", getNextDay(today) + "T00:00:00"));
+        }
+        return queryTodayCompletedTasks(userId, "completed_at", TaskProjection.REPORT,
+                                        SupabaseJsonDecoder::readTasksAsMessages, null);
+    }
+
+    /**
+     * 今日待完成任务（晚报使用，优先查询本地副本）
+     * @return 任务列表，远程查询失败时返回null
+     */
+    public java.util.List<SimpleMessage> getTodayPendingTaskMessages(String userId) {
+        if (useLocalReplica()) {
+            String today = todayDate();
+            return toTaskMessages(TaskSyncManager.getInstance(context).replica()
+                    .getPendingTasksDueBetween(userId, today + "T00:00:00", getNextDay(today) + "T00:00:00"));
+        }
+        return queryTodayPendingTasks(userId, "deadline", TaskProjection.REPORT,
+                                      SupabaseJsonDecoder::readTasksAsMessages, null);
+    }
+
+    /**
+     * 即将到期任务（到期提醒使用，优先查询本地副本）
+     */
+    public java.util.List<SimpleMessage> getUpcomingDeadlineTaskMessages(String userId) {
+        if (useLocalReplica()) {
+            java.util.Date now = new java.util.Date();
+            return toTaskMessages(TaskSyncManager.getInstance(context).replica()
+                    .getUpcomingDeadlineTasks(userId, formatLocalTimestamp(now),
+                            formatLocalTimestamp(new java.util.Date(now.getTime() + 24 * 60 * 60 * 1000))));
+        }
+        return queryUpcomingDeadlineTasks(userId, TaskProjection.REMINDER,
+                                          SupabaseJsonDecoder::readTasksAsMessages, new java.util.ArrayList<>());
+    }
+
+    /**
+     * 逾期任务（逾期提醒使用，优先查询本地副本）
+     */
+    public java.util.List<SimpleMessage> getOverdueTaskMessages(String userId) {
+        if (useLocalReplica()) {
+            return toTaskMessages(TaskSyncManager.getInstance(context).replica()
+                    .getOverdueTasks(userId, formatLocalTimestamp(new java.util.Date())));
+        }
+        return queryOverdueTasks(userId, TaskProjection.REMINDER,
+                                 SupabaseJsonDecoder::readTasksAsMessages, new java.util.ArrayList<>());
+    }
+
+    /**
+     * 本地任务副本是否可用（超过30秒未同步时先做一次增量同步；离线时继续使用已有副本）
+     */
+    private boolean useLocalReplica() {
+        try {
+            return TaskSyncManager.getInstance(context).syncIfStale(30 * 1000);
+        } catch (Exception e) {
+            Log.e(TAG, "检查本地任务副本失败", e);
+            return false;
+        }
+    }
+
+    private String todayDate() {
+        return new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault()).format(new java.util.Date());
+    }
+
+    /**
+     * 本地副本中的任务转换为通知使用的SimpleMessage（字段与readTasksAsMessages一致）
+     */
+    public static java.util.List<SimpleMessage> toTaskMessages(java.util.List<DetailedTask> tasks) {
+        java.util.List<SimpleMessage> messages = new java.util.ArrayList<>();
+        for (DetailedTask task : tasks) {
+            SimpleMessage message = new SimpleMessage();
+            message.id = task.id;
+            message.taskId = task.taskId;
+            message.title = task.title != null ? task.title : "未命名任务";
+            message.content = "";
+            message.senderId = task.userId != null ? task.userId : "";
+            message.createdAt = task.createdAt != null ? task.createdAt : "";
+            message.messageType = "task";
+            message.assignee = task.assignee != null ? task.assignee : "";
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * 今日任务详细列表（DETAIL投影）
+     */
+    public java.util.List<DetailedTask> getTodayTaskList(String userId) {
+        return queryTodayTasks(userId, "deadline", TaskProjection.DETAIL,
+                               this::readTasksDetailed, new java.util.ArrayList<>());
+    }
+
+    /**
+     * 今日已完成任务详细列表（DETAIL投影）
+     */
+    public java.util.List<DetailedTask> getTodayCompletedTaskList(String userId) {
+        return queryTodayCompletedTasks(userId, "completed_at", TaskProjection.DETAIL,
+                                        this::readTasksDetailed, new java.util.ArrayList<>());
+    }
+
+    /**
+     * 今日待完成任务详细列表（DETAIL投影）
+     */
+    public java.util.List<DetailedTask> getTodayPendingTaskList(String userId) {
+        return queryTodayPendingTasks(userId, "deadline", TaskProjection.DETAIL,
+                                      this::readTasksDetailed, new java.util.ArrayList<>());
+    }
+
+    /**
+     * 即将到期任务详细列表（DETAIL投影）
+     */
+    public java.util.List<DetailedTask> getUpcomingDeadlineTaskList(String userId) {
+        return queryUpcomingDeadlineTasks(userId, TaskProjection.DETAIL,
+                                          this::readTasksDetailed, new java.util.ArrayList<>());
+    }
+
+    /**
+     * 逾期任务详细列表（DETAIL投影）
+     */
+    public java.util.List<DetailedTask> getOverdueTaskList(String userId) {
+        return queryOverdueTasks(userId, TaskProjection.DETAIL,
+                                 this::readTasksDetailed, new java.util.ArrayList<>());
+    }
+
     /**
      * 格式化任务优先级
      */
@@ -1020,7 +1204,18 @@ public class SupabaseInterface {
     @JavascriptInterface
     public String formatTasksAsDetailedJson(String tasksJson) {
         try {
-            java.util.List<DetailedTask> tasks = parseTasksDetailed(tasksJson);
+            return toDetailedJson(parseTasksDetailed(tasksJson));
+        } catch (Exception e) {
+            Log.e(TAG, "格式化任务详情JSON失败", e);
+            return tasksJson; // 返回原始数据
+        }
+    }
+
+    /**
+     * 将DetailedTask列表序列化为JS端使用的JSON字符串
+     */
+    private String toDetailedJson(java.util.List<DetailedTask> tasks) {
+        try {
             JSONArray resultArray = new JSONArray();
 
             for (DetailedTask task : tasks) {
@@ -1059,7 +1254,7 @@ public class SupabaseInterface {
             return resultArray.toString();
         } catch (Exception e) {
             Log.e(TAG, "格式化任务详情JSON失败", e);
-            return tasksJson; // 返回原始数据
+            return "[]";
         }
     }
 
@@ -1068,8 +1263,7 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getTodayTasksDetailed(String userId) {
-        String rawTasks = getTodayTasks(userId);
-        return formatTasksAsDetailedJson(rawTasks);
+        return toDetailedJson(getTodayTaskList(userId));
     }
 
     /**
@@ -1077,8 +1271,7 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getTodayCompletedTasksDetailed(String userId) {
-        String rawTasks = getTodayCompletedTasks(userId);
-        return formatTasksAsDetailedJson(rawTasks);
+        return toDetailedJson(getTodayCompletedTaskList(userId));
     }
 
     /**
@@ -1086,8 +1279,7 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getTodayPendingTasksDetailed(String userId) {
-        String rawTasks = getTodayPendingTasks(userId);
-        return formatTasksAsDetailedJson(rawTasks);
+        return toDetailedJson(getTodayPendingTaskList(userId));
     }
 
     /**
@@ -1095,8 +1287,7 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getUpcomingDeadlineTasksDetailed(String userId) {
-        String rawTasks = getUpcomingDeadlineTasks(userId);
-        return formatTasksAsDetailedJson(rawTasks);
+        return toDetailedJson(getUpcomingDeadlineTaskList(userId));
     }
 
     /**
@@ -1104,57 +1295,112 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public String getOverdueTasksDetailed(String userId) {
-        String rawTasks = getOverdueTasks(userId);
-        return formatTasksAsDetailedJson(rawTasks);
+        return toDetailedJson(getOverdueTaskList(userId));
+    }
+
+    /**
+     * 增量同步任务到本地存储（只拉取updated_at水位之后变化的任务）
+     * @return 同步统计JSON，changed为本次变化的任务数，失败时为-1
+     */
+    @JavascriptInterface
+    public String syncTasks() {
+        TaskSyncManager syncManager = TaskSyncManager.getInstance(context);
+        int changed = syncManager.sync();
+        JSONObject result = syncManager.getStats();
+        try {
+            result.put("changed", changed);
+        } catch (Exception e) {
+            Log.e(TAG, "生成同步结果失败", e);
+        }
+        return result.toString();
+    }
+
+    /**
+     * 获取本地已同步的指定用户任务（详细格式化版本，不发起网络请求）
+     */
+    @JavascriptInterface
+    public String getSyncedTasksDetailed(String userId) {
+        return toDetailedJson(fillComputedFields(TaskSyncManager.getInstance(context).getTasksForAssignee(userId)));
     }
 
     /**
      * 获取任务统计信息
+     * 一次请求取回统计窗口内的任务，在本地按今日/已完成/待完成/即将到期/逾期分桶计数
      */
     @JavascriptInterface
     public String getTasksStatistics(String userId) {
         try {
-            String todayTasks = getTodayTasks(userId);
-            String todayCompleted = getTodayCompletedTasks(userId);
-            String todayPending = getTodayPendingTasks(userId);
-            String upcomingTasks = getUpcomingDeadlineTasks(userId);
-            String overdueTasks = getOverdueTasks(userId);
-
-            java.util.List<DetailedTask> todayTasksList = parseTasksDetailed(todayTasks);
-            java.util.List<DetailedTask> todayCompletedList = parseTasksDetailed(todayCompleted);
-            java.util.List<DetailedTask> todayPendingList = parseTasksDetailed(todayPending);
-            java.util.List<DetailedTask> upcomingList = parseTasksDetailed(upcomingTasks);
-            java.util.List<DetailedTask> overdueList = parseTasksDetailed(overdueTasks);
+            java.util.Date now = new java.util.Date();
+            java.text.SimpleDateFormat localDateFormat = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault());
+            String today = localDateFormat.format(now);
+            String todayStart = today + "T00:00:00";
+            String tomorrowStart = getNextDay(today) + "T00:00:00";
+            String nowStr = formatLocalTimestamp(now);
+            String next24HoursStr = formatLocalTimestamp(new java.util.Date(now.getTime() + 24 * 60 * 60 * 1000));
+
+            java.util.List<DetailedTask> windowTasks = queryStatisticsWindow(userId, todayStart, tomorrowStart,
+                    next24HoursStr.compareTo(tomorrowStart) > 0 ? next24HoursStr : tomorrowStart);
+            if (windowTasks == null) {
+                return "{}";
+            }
+
+            int todayTotal = 0, todayCompleted = 0, todayPending = 0, upcoming = 0, overdue = 0;
+            int highPriority = 0, mediumPriority = 0, lowPriority = 0;
+            for (DetailedTask task : windowTasks) {
+                // 时间统一截取为本地格式（yyyy-MM-ddTHH:mm:ss）后按字符串比较，与服务端原有查询条件一致
+                String deadline = DatabaseHelper.toTimestampKey(task.deadline);
+                String completedAt = DatabaseHelper.toTimestampKey(task.completedAt);
+
+                boolean dueToday = deadline != null && deadline.compareTo(todayStart) >= 0
+                        && deadline.compareTo(tomorrowStart) < 0;
+                if (dueToday) {
+                    todayTotal++;
+                    if (!task.completed) {
+                        todayPending++;
+
+                        // 优先级统计（今日待完成任务）
+                        String priority = task.priority != null ? task.priority.toLowerCase() : "medium";
+                        switch (priority) {
+                            case "high":
+                            case "urgent":
+                                highPriority++;
+                                break;
+                            case "low":
+                                lowPriority++;
+                                break;
+                            default:
+                                mediumPriority++;
+                                break;
+                        }
+                    }
+                }
+
+                if (task.completed && completedAt != null && completedAt.compareTo(todayStart) >= 0
+                        && completedAt.compareTo(tomorrowStart) < 0) {
+                    todayCompleted++;
+                }
+
+                if (!task.completed && deadline != null) {
+                    if (deadline.compareTo(nowStr) < 0) {
+                        overdue++;
+                    } else if (deadline.compareTo(next24HoursStr) <= 0) {
+                        upcoming++;
+                    }
+                }
+            }
 
             JSONObject statistics = new JSONObject();
-            statistics.put("todayTotal", todayTasksList.size());
-            statistics.put("todayCompleted", todayCompletedList.size());
-            statistics.put("todayPending", todayPendingList.size());
-            statistics.put("upcomingDeadlines", upcomingList.size());
-            statistics.put("overdue", overdueList.size());
+            statistics.put("todayTotal", todayTotal);
+            statistics.put("todayCompleted", todayCompleted);
+            statistics.put("todayPending", todayPending);
+            statistics.put("upcomingDeadlines", upcoming);
+            statistics.put("overdue", overdue);
 
             // 计算完成率
-            double completionRate = todayTasksList.size() > 0 ?
-                (double) todayCompletedList.size() / todayTasksList.size() * 100 : 0;
+            double completionRate = todayTotal > 0 ?
+                (double) todayCompleted / todayTotal * 100 : 0;
             statistics.put("completionRate", Math.round(completionRate * 100.0) / 100.0);
 
-            // 优先级统计
-            int highPriority = 0, mediumPriority = 0, lowPriority = 0;
-            for (DetailedTask task : todayPendingList) {
-                String priority = task.priority != null ? task.priority.toLowerCase() : "medium";
-                switch (priority) {
-                    case "high":
-                    case "urgent":
-                        highPriority++;
-                        break;
-                    case "low":
-                        lowPriority++;
-                        break;
-                    default:
-                        mediumPriority++;
-                        break;
-                }
-            }
             JSONObject priorityStats = new JSONObject();
             priorityStats.put("high", highPriority);
             priorityStats.put("medium", mediumPriority);
@@ -1163,7 +1409,7 @@ public class SupabaseInterface {
 
             // 时间统计
             java.text.SimpleDateFormat timeFormat = new java.text.SimpleDateFormat("HH:mm", java.util.Locale.getDefault());
-            statistics.put("lastUpdated", timeFormat.format(new java.util.Date()));
+            statistics.put("lastUpdated", timeFormat.format(now));
 
             return statistics.toString();
         } catch (Exception e) {
@@ -1172,53 +1418,68 @@ public class SupabaseInterface {
         }
     }
 
+    /**
+     * 查询统计窗口内的任务：截止时间早于deadlineUpper的未完成任务（即将到期和逾期）、今日到期的任务，或今日完成的任务
+     * 已完成的历史任务不在窗口内，结果大小不随历史增长
+     * @return 任务列表，配置不完整或请求失败时返回null
+     */
+    private java.util.List<DetailedTask> queryStatisticsWindow(String userId, String todayStart, String tomorrowStart,
+                                                               String deadlineUpper) {
+        try {
+            AppSettings settings = AppSettings.get(context);
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
+
+            if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
+                Log.w(TAG, "Supabase配置不完整");
+                return null;
+            }
+
+            String encodedUserId = java.net.URLEncoder.encode(userId, "UTF-8");
+            String queryUrl = supabaseUrl + "/rest/v1/tasks" +
+                            "?user_id=eq." + supabaseUserId +
+                            "&and=(or(assignee.ilike.%25" + encodedUserId + "%25,assignee.eq." + encodedUserId + ")," +
+                            "or(and(completed.eq.false,deadline.lte." + deadlineUpper + ")," +
+                            "and(deadline.gte." + todayStart + ",deadline.lt." + tomorrowStart + ")," +
+                            "completed_at.gte." + todayStart + "))" +
+                            TaskProjection.STATISTICS.toQueryParam();
+
+            Log.d(TAG, "获取任务统计窗口查询URL: " + queryUrl);
+            return executeGetRequest(queryUrl, supabaseAnonKey, SupabaseJsonDecoder::readTasksDetailed, null);
+        } catch (Exception e) {
+            Log.e(TAG, "获取任务统计窗口失败", e);
+            return null;
+        }
+    }
+
     /**
      * 执行GET请求的通用方法
+     * 成功时响应流直接交给reader解码，不在内存中保留完整响应字符串
      */
-    private String executeGetRequest(String queryUrl, String supabaseAnonKey) {
+    private <T> T executeGetRequest(String queryUrl, String supabaseAnonKey,
+                                    SupabaseJsonDecoder.BodyReader<T> reader, T fallback) {
         try {
             Log.d(TAG, "执行GET请求: " + queryUrl);
 
-            URL url = new URL(queryUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-
-            int responseCode = connection.getResponseCode();
-            Log.d(TAG, "响应码: " + responseCode);
-
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
+            try (SupabaseHttpClient.Response response = httpClient.get(queryUrl, supabaseAnonKey)) {
+                int responseCode = response.code();
+                Log.d(TAG, "响应码: " + responseCode);
 
-                String result = response.toString();
-                Log.d(TAG, "GET请求成功，返回数据长度: " + result.length());
-                Log.d(TAG, "返回数据内容: " + (result.length() > 200 ? result.substring(0, 200) + "..." : result));
-                return result;
-            } else {
-                // 读取错误响应
-                BufferedReader errorReader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-                StringBuilder errorResponse = new StringBuilder();
-                String errorLine;
-                while ((errorLine = errorReader.readLine()) != null) {
-                    errorResponse.append(errorLine);
+                if (responseCode == HttpURLConnection.HTTP_OK) {
+                    T result = reader.read(response.body());
+                    Log.d(TAG, "GET请求成功");
+                    return result;
+                } else {
+                    // 读取错误响应
+                    Log.e(TAG, "GET请求失败，响应码: " + responseCode + ", URL: " + queryUrl);
+                    Log.e(TAG, "错误响应: " + response.bodyString());
+                    return fallback;
                 }
-                errorReader.close();
-
-                Log.e(TAG, "GET请求失败，响应码: " + responseCode + ", URL: " + queryUrl);
-                Log.e(TAG, "错误响应: " + errorResponse.toString());
-                return "[]";
             }
         } catch (Exception e) {
             Log.e(TAG, "执行GET请求异常: " + queryUrl, e);
-            return "[]";
+            return fallback;
         }
     }
 
@@ -1245,13 +1506,13 @@ public class SupabaseInterface {
     @JavascriptInterface
     public String getDailyTodoSettings() {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+            AppSettings appSettings = AppSettings.get(context);
 
             JSONObject settings = new JSONObject();
-            settings.put("template", prefs.getString("daily_todo_template", "上班打卡|high|work|09:50\n下班打卡|high|work|19:00"));
-            settings.put("enabled", prefs.getBoolean("daily_todo_enabled", true));
-            settings.put("skipHolidays", prefs.getBoolean("daily_todo_skip_holidays", true));
-            settings.put("lastAddedDate", prefs.getString("daily_todo_last_added_date", ""));
+            settings.put("template", appSettings.dailyTodoTemplateOr(AppSettings.DEFAULT_DAILY_TODO_TEMPLATE));
+            settings.put("enabled", appSettings.dailyTodoEnabled);
+            settings.put("skipHolidays", appSettings.dailyTodoSkipHolidays);
+            settings.put("lastAddedDate", appSettings.dailyTodoLastAddedDate);
 
             Log.d(TAG, "获取每日待办配置: " + settings.toString());
             return settings.toString();
@@ -1277,6 +1538,7 @@ public class SupabaseInterface {
             editor.putBoolean("daily_todo_skip_holidays", skipHolidays);
 
             boolean success = editor.commit();
+            AppSettings.reload(context);
             if (success) {
                 Log.d(TAG, "每日待办配置已保存");
             } else {
@@ -1298,7 +1560,9 @@ public class SupabaseInterface {
             SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
             SharedPreferences.Editor editor = prefs.edit();
             editor.putString("daily_todo_last_added_date", date);
-            return editor.commit();
+            boolean success = editor.commit();
+            AppSettings.reload(context);
+            return success;
         } catch (Exception e) {
             Log.e(TAG, "更新最后添加日期失败", e);
             return false;
@@ -1332,8 +1596,8 @@ public class SupabaseInterface {
             });
         }
 
-        // 在后台线程直接执行任务生成
-        executorService.execute(() -> {
+        // 在同步通道执行任务生成
+        executors.sync().execute(() -> {
             try {
                 String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
                     .format(new java.util.Date());
@@ -1341,15 +1605,15 @@ public class SupabaseInterface {
                 Log.d(TAG, "开始生成每日待办任务，日期: " + today);
 
                 // 读取配置
-                SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-                boolean enabled = prefs.getBoolean("daily_todo_enabled", true);
-                boolean skipHolidays = prefs.getBoolean("daily_todo_skip_holidays", true);
-                String template = prefs.getString("daily_todo_template", "");
-                String lastAddedDate = prefs.getString("daily_todo_last_added_date", "");
-                String supabaseUrl = prefs.getString("supabase_url", "");
-                String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-                String supabaseUserId = prefs.getString("supabase_user_id", "");
-                String currentUserId = prefs.getString("current_user_id", supabaseUserId);
+                AppSettings settings = AppSettings.get(context);
+                boolean enabled = settings.dailyTodoEnabled;
+                boolean skipHolidays = settings.dailyTodoSkipHolidays;
+                String template = settings.dailyTodoTemplateOr("");
+                String lastAddedDate = settings.dailyTodoLastAddedDate;
+                String supabaseUrl = settings.supabaseUrl;
+                String supabaseAnonKey = settings.supabaseAnonKey;
+                String supabaseUserId = settings.supabaseUserId;
+                String currentUserId = settings.currentUserIdOr(supabaseUserId);
 
                 // 检查配置
                 if (!enabled) {
@@ -1389,9 +1653,9 @@ public class SupabaseInterface {
 
                 Log.d(TAG, "节假日检查通过，继续生成任务");
 
-                // 解析模板并生成任务
+                // 解析模板，整批任务一次写入
                 String[] lines = template.split("\n");
-                int createdCount = 0;
+                DailyTodoBatch batch = new DailyTodoBatch(today, supabaseUserId);
 
                 Log.d(TAG, "模板内容: " + template);
                 Log.d(TAG, "解析出 " + lines.length + " 行任务模板");
@@ -1419,12 +1683,6 @@ public class SupabaseInterface {
 
                     Log.d(TAG, "任务信息 - 标题: " + title + ", 优先级: " + priority + ", 分类: " + category + ", 时间: " + timeStr + ", 负责人: " + assignee);
 
-                    // 检查今天是否已存在相同标题和负责人的任务
-                    if (checkTaskExistsToday(supabaseUrl, supabaseAnonKey, supabaseUserId, title, assignee, today)) {
-                        Log.d(TAG, "⚠ 今天已存在相同任务，跳过: " + title + " (负责人: " + assignee + ")");
-                        continue;
-                    }
-
                     // 构建截止时间
                     String[] timeParts = timeStr.split(":");
                     int hours = timeParts.length > 0 ? Integer.parseInt(timeParts[0].trim()) : 23;
@@ -1432,19 +1690,26 @@ public class SupabaseInterface {
                     String deadline = String.format("%sT%02d:%02d:00", today, hours, minutes);
 
                     Log.d(TAG, "截止时间: " + deadline);
-                    Log.d(TAG, "准备调用createTaskDirect创建任务...");
-
-                    // 创建任务
-                    if (createTaskDirect(supabaseUrl, supabaseAnonKey, supabaseUserId, title, priority, category, deadline, assignee)) {
-                        createdCount++;
-                        Log.d(TAG, "✓ 创建任务成功: " + title + " (第" + createdCount + "个)");
-                    } else {
-                        Log.e(TAG, "✗ 创建任务失败: " + title);
-                    }
+                    batch.add(title, priority, category, deadline, assignee, null);
+                }
+
+                // 一次请求写入，今天已存在的任务（相同确定性id）由服务端忽略
+                java.util.List<DailyTodoBatch.CreatedTask> created = batch.submit(httpClient, supabaseUrl, supabaseAnonKey,
+                        NotificationLedger.getInstance(context));
+                if (created == null) {
+                    Log.e(TAG, "✗ 批量创建每日待办任务失败");
+                    if (showToast) showToast(mainHandler, "生成任务失败");
+                    return;
+                }
+                int createdCount = created.size();
+                for (DailyTodoBatch.CreatedTask task : created) {
+                    Log.d(TAG, "✓ 创建任务成功: " + task.title + " (负责人: " + task.assignee + ")");
                 }
 
                 // 更新最后添加日期
-                prefs.edit().putString("daily_todo_last_added_date", today).apply();
+                context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE)
+                    .edit().putString("daily_todo_last_added_date", today).apply();
+                AppSettings.reload(context);
 
                 int finalCount = createdCount;
                 if (showToast) {
@@ -1664,13 +1929,13 @@ public class SupabaseInterface {
     public String triggerDailyTodoGenerationDirect() {
         Log.d(TAG, "收到直接生成每日待办任务请求");
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            boolean enabled = prefs.getBoolean("daily_todo_enabled", true);
-            boolean skipHolidays = prefs.getBoolean("daily_todo_skip_holidays", true);
-            String template = prefs.getString("daily_todo_template", "");
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
+            AppSettings settings = AppSettings.get(context);
+            boolean enabled = settings.dailyTodoEnabled;
+            boolean skipHolidays = settings.dailyTodoSkipHolidays;
+            String template = settings.dailyTodoTemplateOr("");
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
 
             // 构建调试信息
             StringBuilder debugInfo = new StringBuilder();
@@ -1696,8 +1961,8 @@ public class SupabaseInterface {
                 return debugInfo.append("\n结果: Supabase配置不完整").toString();
             }
 
-            // 在后台线程执行任务生成
-            executorService.execute(() -> {
+            // 在同步通道执行任务生成
+            executors.sync().execute(() -> {
                 try {
                     String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
                         .format(new java.util.Date());
@@ -1705,7 +1970,7 @@ public class SupabaseInterface {
                     Log.d(TAG, "开始生成每日待办任务，日期: " + today);
 
                     String[] lines = template.split("\n");
-                    int createdCount = 0;
+                    DailyTodoBatch batch = new DailyTodoBatch(today, supabaseUserId);
 
                     for (String line : lines) {
                         line = line.trim();
@@ -1726,13 +1991,13 @@ public class SupabaseInterface {
                         int minutes = timeParts.length > 1 ? Integer.parseInt(timeParts[1].trim()) : 59;
                         String deadline = String.format("%sT%02d:%02d:00", today, hours, minutes);
 
-                        // 创建任务
-                        if (createTaskDirect(supabaseUrl, supabaseAnonKey, supabaseUserId, title, priority, category, deadline, assignee)) {
-                            createdCount++;
-                            Log.d(TAG, "创建任务成功: " + title);
-                        }
+                        batch.add(title, priority, category, deadline, assignee, null);
                     }
 
+                    java.util.List<DailyTodoBatch.CreatedTask> created = batch.submit(httpClient, supabaseUrl, supabaseAnonKey,
+                        NotificationLedger.getInstance(context));
+                    int createdCount = created != null ? created.size() : 0;
+
                     int finalCount = createdCount;
                     android.os.Handler mainHandler = new android.os.Handler(android.os.Looper.getMainLooper());
                     mainHandler.post(() -> {
@@ -1756,68 +2021,6 @@ public class SupabaseInterface {
         }
     }
 
-    /**
-     * 检查今天是否已存在相同标题和负责人的任务
-     */
-    private boolean checkTaskExistsToday(String supabaseUrl, String supabaseAnonKey, String supabaseUserId,
-                                         String title, String assignee, String today) {
-        try {
-            String tomorrow = getNextDay(today);
-
-            // 构建查询URL：查询今天创建的、标题和负责人都相同的任务
-            String queryUrl = supabaseUrl + "/rest/v1/tasks" +
-                    "?user_id=eq." + supabaseUserId +
-                    "&title=eq." + java.net.URLEncoder.encode(title, "UTF-8") +
-                    "&assignee=eq." + java.net.URLEncoder.encode(assignee, "UTF-8") +
-                    "&created_at=gte." + today + "T00:00:00" +
-                    "&created_at=lt." + tomorrow + "T00:00:00" +
-                    "&select=id";
-
-            Log.d(TAG, "检查任务是否存在 - URL: " + queryUrl);
-
-            java.net.URL url = new java.net.URL(queryUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-
-            int responseCode = connection.getResponseCode();
-
-            if (responseCode == java.net.HttpURLConnection.HTTP_OK) {
-                java.io.BufferedReader reader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(connection.getInputStream()));
-                StringBuilder response = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
-                }
-                reader.close();
-
-                String result = response.toString();
-                Log.d(TAG, "查询结果: " + result);
-
-                // 解析JSON数组，如果有数据说明任务已存在
-                org.json.JSONArray jsonArray = new org.json.JSONArray(result);
-                boolean exists = jsonArray.length() > 0;
-
-                if (exists) {
-                    Log.d(TAG, "任务已存在: " + title + " (负责人: " + assignee + ")");
-                } else {
-                    Log.d(TAG, "任务不存在，可以创建: " + title + " (负责人: " + assignee + ")");
-                }
-
-                return exists;
-            } else {
-                Log.e(TAG, "查询任务失败，响应码: " + responseCode);
-                return false; // 查询失败时，默认认为不存在，允许创建
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "检查任务是否存在时发生异常", e);
-            return false; // 异常时，默认认为不存在，允许创建
-        }
-    }
-
     /**
      * 直接创建任务（不通过服务）
      */
@@ -1830,17 +2033,6 @@ public class SupabaseInterface {
             String createUrl = supabaseUrl + "/rest/v1/tasks";
             Log.d(TAG, "完整请求URL: " + createUrl);
 
-            java.net.URL url = new java.net.URL(createUrl);
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("apikey", supabaseAnonKey);
-            connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setRequestProperty("Prefer", "return=minimal");
-            connection.setDoOutput(true);
-
-            Log.d(TAG, "HTTP连接已配置，准备构建任务数据");
-
             // 生成随机ID
             String taskId = java.util.UUID.randomUUID().toString().replace("-", "").substring(0, 24);
 
@@ -1860,38 +2052,27 @@ public class SupabaseInterface {
             Log.d(TAG, "任务数据JSON: " + jsonPayload);
             Log.d(TAG, "准备发送POST请求...");
 
-            java.io.OutputStreamWriter writer = new java.io.OutputStreamWriter(connection.getOutputStream());
-            writer.write(jsonPayload);
-            writer.flush();
-            writer.close();
-
-            Log.d(TAG, "POST请求已发送，等待响应...");
+            boolean success;
+            try (SupabaseHttpClient.Response response = httpClient.send("POST", createUrl, supabaseAnonKey,
+                    jsonPayload, "return=minimal")) {
+                int responseCode = response.code();
+                Log.d(TAG, "收到响应码: " + responseCode);
 
-            int responseCode = connection.getResponseCode();
-            Log.d(TAG, "收到响应码: " + responseCode);
+                success = responseCode == java.net.HttpURLConnection.HTTP_OK ||
+                          responseCode == java.net.HttpURLConnection.HTTP_CREATED ||
+                          responseCode == java.net.HttpURLConnection.HTTP_NO_CONTENT;
 
-            boolean success = responseCode == java.net.HttpURLConnection.HTTP_OK ||
-                            responseCode == java.net.HttpURLConnection.HTTP_CREATED ||
-                            responseCode == java.net.HttpURLConnection.HTTP_NO_CONTENT;
-
-            if (success) {
-                Log.d(TAG, "✓ HTTP请求成功，任务已创建");
-            } else {
-                Log.e(TAG, "✗ HTTP请求失败，响应码: " + responseCode);
+                if (success) {
+                    Log.d(TAG, "✓ HTTP请求成功，任务已创建");
+                } else {
+                    Log.e(TAG, "✗ HTTP请求失败，响应码: " + responseCode);
 
-                // 读取错误响应
-                try {
-                    java.io.BufferedReader errorReader = new java.io.BufferedReader(
-                        new java.io.InputStreamReader(connection.getErrorStream()));
-                    StringBuilder errorResponse = new StringBuilder();
-                    String errorLine;
-                    while ((errorLine = errorReader.readLine()) != null) {
-                        errorResponse.append(errorLine);
+                    // 读取错误响应
+                    try {
+                        Log.e(TAG, "错误响应内容: " + response.bodyString());
+                    } catch (Exception readError) {
+                        Log.e(TAG, "无法读取错误响应", readError);
                     }
-                    errorReader.close();
-                    Log.e(TAG, "错误响应内容: " + errorResponse.toString());
-                } catch (Exception readError) {
-                    Log.e(TAG, "无法读取错误响应", readError);
                 }
             }
 
@@ -1931,11 +2112,50 @@ public class SupabaseInterface {
 
     /**
      * 释放资源
+     * 线程池由AppExecutors全局共享，这里不再关闭，只断开对WebView的引用
      */
     public void destroy() {
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdown();
-        }
+        webView = null;
+    }
+
+    /**
+     * 获取线程池各通道的队列深度等统计信息
+     */
+    @JavascriptInterface
+    public String getExecutorStats() {
+        return executors.getStats().toString();
+    }
+
+    /**
+     * 获取各轮询调度器的有效间隔和请求次数
+     */
+    @JavascriptInterface
+    public String getPollStats() {
+        return AdaptivePollScheduler.getAllStats().toString();
+    }
+
+    /**
+     * 获取后台任务单飞执行的跳过、合并次数和耗时
+     */
+    @JavascriptInterface
+    public String getJobStats() {
+        return SingleFlightRunner.getInstance().getStats().toString();
+    }
+
+    /**
+     * 获取通知去重台账的记录数和拦截的重复通知次数
+     */
+    @JavascriptInterface
+    public String getNotificationLedgerStats() {
+        return NotificationLedger.getInstance(context).getStats().toString();
+    }
+
+    /**
+     * 获取到期提醒的待触发数、下次触发时间和已触发次数
+     */
+    @JavascriptInterface
+    public String getDeadlineAlertStats() {
+        return DeadlineAlertScheduler.getCurrentStats().toString();
     }
 
     /**
@@ -1943,6 +2163,7 @@ public class SupabaseInterface {
      */
     public static class SimpleMessage {
         public long id;
+        public String taskId;  // 关联任务id（任务id为VARCHAR，保留原始字符串）
         public String senderId;
         public String receiverId;
         public String messageType;
@@ -1971,11 +2192,11 @@ public class SupabaseInterface {
      */
     @JavascriptInterface
     public void updateTaskNotesImages(String taskId, String notesImagesJson) {
-        executorService.execute(() -> {
+        executors.interactive().execute(() -> {
             try {
-                SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-                String supabaseUrl = prefs.getString("supabase_url", "");
-                String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
+                AppSettings settings = AppSettings.get(context);
+                String supabaseUrl = settings.supabaseUrl;
+                String supabaseAnonKey = settings.supabaseAnonKey;
 
                 if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty()) {
                     Log.w(TAG, "Supabase配置不完整");
@@ -1983,24 +2204,16 @@ public class SupabaseInterface {
                 }
 
                 String updateUrl = supabaseUrl + "/rest/v1/tasks?id=eq." + taskId;
-                URL url = new URL(updateUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("PATCH");
-                connection.setRequestProperty("apikey", supabaseAnonKey);
-                connection.setRequestProperty("Authorization", "Bearer " + supabaseAnonKey);
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
 
                 // 构建更新数据
                 JSONObject updateData = new JSONObject();
                 updateData.put("notes_images", new JSONArray(notesImagesJson));
 
-                OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-                writer.write(updateData.toString());
-                writer.flush();
-                writer.close();
-
-                int responseCode = connection.getResponseCode();
+                int responseCode;
+                try (SupabaseHttpClient.Response response = httpClient.send("PATCH", updateUrl, supabaseAnonKey,
+                        updateData.toString(), null)) {
+                    responseCode = response.code();
+                }
                 if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
                     Log.d(TAG, "任务备注图片更新成功，任务ID: " + taskId);
                 } else {
@@ -2019,17 +2232,17 @@ public class SupabaseInterface {
     @JavascriptInterface
     public String getDailyTodoDebugInfo() {
         try {
-            SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+            AppSettings settings = AppSettings.get(context);
 
             // 获取配置信息
-            boolean enabled = prefs.getBoolean("daily_todo_enabled", true);
-            boolean skipHolidays = prefs.getBoolean("daily_todo_skip_holidays", true);
-            String template = prefs.getString("daily_todo_template", "");
-            String lastAddedDate = prefs.getString("daily_todo_last_added_date", "");
-            String supabaseUrl = prefs.getString("supabase_url", "");
-            String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-            String supabaseUserId = prefs.getString("supabase_user_id", "");
-            String currentUserId = prefs.getString("current_user_id", "");
+            boolean enabled = settings.dailyTodoEnabled;
+            boolean skipHolidays = settings.dailyTodoSkipHolidays;
+            String template = settings.dailyTodoTemplateOr("");
+            String lastAddedDate = settings.dailyTodoLastAddedDate;
+            String supabaseUrl = settings.supabaseUrl;
+            String supabaseAnonKey = settings.supabaseAnonKey;
+            String supabaseUserId = settings.supabaseUserId;
+            String currentUserId = settings.currentUserIdOr("");
 
             // 获取当前日期和节假日状态
             java.util.Date currentDate = new java.util.Date();
@@ -2143,13 +2356,13 @@ public class SupabaseInterface {
 
         android.os.Handler mainHandler = new android.os.Handler(android.os.Looper.getMainLooper());
 
-        executorService.execute(() -> {
+        executors.interactive().execute(() -> {
             try {
-                SharedPreferences prefs = context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-                String supabaseUrl = prefs.getString("supabase_url", "");
-                String supabaseAnonKey = prefs.getString("supabase_anon_key", "");
-                String supabaseUserId = prefs.getString("supabase_user_id", "");
-                String currentUserId = prefs.getString("current_user_id", supabaseUserId);
+                AppSettings settings = AppSettings.get(context);
+                String supabaseUrl = settings.supabaseUrl;
+                String supabaseAnonKey = settings.supabaseAnonKey;
+                String supabaseUserId = settings.supabaseUserId;
+                String currentUserId = settings.currentUserIdOr(supabaseUserId);
 
                 if (supabaseUrl.isEmpty() || supabaseAnonKey.isEmpty() || supabaseUserId.isEmpty()) {
                     String error = "Supabase配置不完整";
@@ -2198,6 +2411,7 @@ public class SupabaseInterface {
      */
     public static class DetailedTask {
         public long id;
+        public String taskId; // 原始任务id（VARCHAR），id仅在可解析为数字时有值
         public String userId;
         public String title;
         public String description;
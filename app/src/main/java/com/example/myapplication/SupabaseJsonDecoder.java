@@ -0,0 +1,393 @@
+package com.example.myapplication;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PostgREST响应流式解码器
+ * 直接从响应流逐字段读取到任务/消息模型，不再经过中间字符串和JSONArray树
+ */
+public final class SupabaseJsonDecoder {
+
+    /**
+     * 响应体读取器：把响应流转换为调用方需要的结果
+     */
+    public interface BodyReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    private SupabaseJsonDecoder() {
+    }
+
+    /**
+     * 原样读取为字符串（供JS接口返回原始JSON使用）
+     */
+    public static String readString(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toString(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * 解码消息数组
+     */
+    public static List<SupabaseInterface.SimpleMessage> readMessages(InputStream in) throws IOException {
+        List<SupabaseInterface.SimpleMessage> messages = new ArrayList<>();
+        // 注意不关闭reader：底层流由SupabaseHttpClient.Response负责读完并归还连接
+        JsonReader reader = newReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            messages.add(readMessage(reader));
+        }
+        reader.endArray();
+        return messages;
+    }
+
+    /**
+     * 解码任务数组为SimpleMessage（用于通知显示）
+     */
+    public static List<SupabaseInterface.SimpleMessage> readTasksAsMessages(InputStream in) throws IOException {
+        List<SupabaseInterface.SimpleMessage> messages = new ArrayList<>();
+        JsonReader reader = newReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            messages.add(readTaskAsMessage(reader));
+        }
+        reader.endArray();
+        return messages;
+    }
+
+    /**
+     * 解码任务数组为DetailedTask（只填充原始字段，格式化字段由调用方计算）
+     */
+    public static List<SupabaseInterface.DetailedTask> readTasksDetailed(InputStream in) throws IOException {
+        List<SupabaseInterface.DetailedTask> tasks = new ArrayList<>();
+        JsonReader reader = newReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            tasks.add(readDetailedTask(reader));
+        }
+        reader.endArray();
+        return tasks;
+    }
+
+    private static JsonReader newReader(InputStream in) {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        return reader;
+    }
+
+    private static SupabaseInterface.SimpleMessage readMessage(JsonReader reader) throws IOException {
+        SupabaseInterface.SimpleMessage message = new SupabaseInterface.SimpleMessage();
+        message.senderId = "";
+        message.receiverId = "";
+        message.messageType = "";
+        message.title = "";
+        message.content = "";
+        message.taskTitle = "";
+        message.completionNotes = "";
+        message.createdAt = "";
+        message.taskId = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    message.id = nextLong(reader, 0);
+                    break;
+                case "task_id":
+                    message.taskId = nextString(reader, "");
+                    break;
+                case "sender_id":
+                    message.senderId = nextString(reader, "");
+                    break;
+                case "receiver_id":
+                    message.receiverId = nextString(reader, "");
+                    break;
+                case "message_type":
+                    message.messageType = nextString(reader, "");
+                    break;
+                case "title":
+                    message.title = nextString(reader, "");
+                    break;
+                case "content":
+                    message.content = nextString(reader, "");
+                    break;
+                case "task_title":
+                    message.taskTitle = nextString(reader, "");
+                    break;
+                case "completion_notes":
+                    message.completionNotes = nextString(reader, "");
+                    break;
+                case "created_at":
+                    message.createdAt = nextString(reader, "");
+                    break;
+                case "is_read":
+                    message.isRead = nextBoolean(reader, false);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return message;
+    }
+
+    private static SupabaseInterface.SimpleMessage readTaskAsMessage(JsonReader reader) throws IOException {
+        SupabaseInterface.SimpleMessage message = new SupabaseInterface.SimpleMessage();
+        message.title = "未命名任务";
+        message.content = "";
+        message.senderId = "";
+        message.createdAt = "";
+        message.messageType = "task";
+        message.assignee = "";
+        message.taskId = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    // 任务id为VARCHAR，保留原始字符串，数值id仅在可解析时填充
+                    message.taskId = nextString(reader, "");
+                    message.id = parseLong(message.taskId);
+                    break;
+                case "title":
+                    message.title = nextString(reader, "未命名任务");
+                    break;
+                case "description":
+                    message.content = nextString(reader, "");
+                    break;
+                case "user_id":
+                    message.senderId = nextString(reader, "");
+                    break;
+                case "created_at":
+                    message.createdAt = nextString(reader, "");
+                    break;
+                case "assignee":
+                    message.assignee = nextString(reader, "");
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return message;
+    }
+
+    private static SupabaseInterface.DetailedTask readDetailedTask(JsonReader reader) throws IOException {
+        SupabaseInterface.DetailedTask task = new SupabaseInterface.DetailedTask();
+        task.taskId = "";
+        task.userId = "";
+        task.title = "未命名任务";
+        task.description = "";
+        task.assignee = "";
+        task.priority = "medium";
+        task.status = "pending";
+        task.date = "";
+        task.deadline = "";
+        task.createdAt = "";
+        task.updatedAt = "";
+        task.completedAt = "";
+        task.category = "";
+        task.tags = "";
+        task.notes = "";
+        task.notesImages = "[]";
+        task.attachments = "";
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    task.taskId = nextString(reader, "");
+                    task.id = parseLong(task.taskId);
+                    break;
+                case "user_id":
+                    task.userId = nextString(reader, "");
+                    break;
+                case "title":
+                    task.title = nextString(reader, "未命名任务");
+                    break;
+                case "description":
+                    task.description = nextString(reader, "");
+                    break;
+                case "assignee":
+                    task.assignee = nextString(reader, "");
+                    break;
+                case "priority":
+                    task.priority = nextString(reader, "medium");
+                    break;
+                case "status":
+                    task.status = nextString(reader, "pending");
+                    break;
+                case "completed":
+                    task.completed = nextBoolean(reader, false);
+                    break;
+                case "date":
+                    task.date = nextString(reader, "");
+                    break;
+                case "deadline":
+                    task.deadline = nextString(reader, "");
+                    break;
+                case "created_at":
+                    task.createdAt = nextString(reader, "");
+                    break;
+                case "updated_at":
+                    task.updatedAt = nextString(reader, "");
+                    break;
+                case "completed_at":
+                    task.completedAt = nextString(reader, "");
+                    break;
+                case "category":
+                    task.category = nextString(reader, "");
+                    break;
+                case "tags":
+                    task.tags = nextString(reader, "");
+                    break;
+                case "estimated_hours":
+                    task.estimatedHours = (int) nextLong(reader, 0);
+                    break;
+                case "actual_hours":
+                    task.actualHours = (int) nextLong(reader, 0);
+                    break;
+                case "notes":
+                    task.notes = nextString(reader, "");
+                    break;
+                case "notes_images":
+                    task.notesImages = nextString(reader, "[]");
+                    break;
+                case "attachments":
+                    task.attachments = nextString(reader, "");
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return task;
+    }
+
+    /**
+     * 读取字符串值；数字/布尔转为文本，数组/对象（如jsonb列）还原为JSON文本，null返回默认值
+     */
+    private static String nextString(JsonReader reader, String fallback) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case NULL:
+                reader.nextNull();
+                return fallback;
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            case BEGIN_ARRAY:
+            case BEGIN_OBJECT:
+                StringBuilder json = new StringBuilder();
+                writeJson(reader, json);
+                return json.toString();
+            default:
+                return reader.nextString();
+        }
+    }
+
+    private static long nextLong(JsonReader reader, long fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            String value = reader.nextString();
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                try {
+                    return (long) Double.parseDouble(value);
+                } catch (NumberFormatException ignored) {
+                    return fallback;
+                }
+            }
+        }
+        reader.skipValue();
+        return fallback;
+    }
+
+    private static boolean nextBoolean(JsonReader reader, boolean fallback) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        if (token == JsonToken.STRING) {
+            String value = reader.nextString();
+            if ("true".equalsIgnoreCase(value)) return true;
+            if ("false".equalsIgnoreCase(value)) return false;
+            return fallback;
+        }
+        reader.skipValue();
+        return fallback;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 将当前嵌套值原样写回JSON文本
+     */
+    private static void writeJson(JsonReader reader, StringBuilder out) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                out.append('[');
+                boolean firstItem = true;
+                while (reader.hasNext()) {
+                    if (!firstItem) out.append(',');
+                    firstItem = false;
+                    writeJson(reader, out);
+                }
+                reader.endArray();
+                out.append(']');
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                out.append('{');
+                boolean firstField = true;
+                while (reader.hasNext()) {
+                    if (!firstField) out.append(',');
+                    firstField = false;
+                    out.append(JSONObject.quote(reader.nextName())).append(':');
+                    writeJson(reader, out);
+                }
+                reader.endObject();
+                out.append('}');
+                break;
+            case STRING:
+                out.append(JSONObject.quote(reader.nextString()));
+                break;
+            case NUMBER:
+                out.append(reader.nextString());
+                break;
+            case BOOLEAN:
+                out.append(reader.nextBoolean());
+                break;
+            default:
+                reader.nextNull();
+                out.append("null");
+                break;
+        }
+    }
+}
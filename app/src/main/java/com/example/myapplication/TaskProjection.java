@@ -0,0 +1,37 @@
+package com.example.myapplication;
+
+/**
+ * 任务查询的列投影
+ * 按使用场景只下载需要的列，避免completion_image/completion_images等大字段随每次查询返回
+ */
+public enum TaskProjection {
+
+    /** 全部列（JS端原始数据接口使用，保持原有返回内容） */
+    FULL(null),
+
+    /** 早晚报告：只需要标题和完成情况 */
+    REPORT("id,title,assignee,deadline,completed,completed_at"),
+
+    /** 到期/逾期提醒：需要负责人和截止时间用于去重和消息分发 */
+    REMINDER("id,title,assignee,deadline,user_id,created_at"),
+
+    /** 任务统计：只需要分桶计数和优先级分布用到的字段 */
+    STATISTICS("id,priority,completed,deadline,completed_at"),
+
+    /** 详细任务视图：对应DetailedTask使用的字段 */
+    DETAIL("id,user_id,title,notes,notes_images,assignee,category,priority,completed,"
+            + "deadline,created_at,updated_at,completed_at");
+
+    private final String columns;
+
+    TaskProjection(String columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * 返回拼接到查询URL上的select参数（以&开头），FULL返回空字符串
+     */
+    public String toQueryParam() {
+        return columns == null ? "" : "&select=" + columns;
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * 任务增量同步
+ * 以updated_at（由update_tasks_updated_at触发器维护）为水位，每次只拉取水位之后变化的任务并合并到本地SQLite副本；
+ * 没有变化时响应只是一个空数组。删除无法通过updated_at感知，因此定期做一次全量同步替换本地副本。
+ * 水位和任务数据在同一个事务中提交，进程重启后可以直接继续增量同步
+ */
+public class TaskSyncManager {
+
+    private static final String TAG = "TaskSyncManager";
+
+    // 单页最多拉取的行数，超过时按 (updated_at, id) 继续翻页
+    private static final int PAGE_SIZE = 500;
+    // 全量同步间隔，用于清除服务端已删除的任务
+    private static final long FULL_SYNC_INTERVAL_MS = 6 * 60 * 60 * 1000L;
+    // updated_at取自事务开始时间（NOW()），晚提交的事务可能落在水位之前；
+    // 增量同步从水位前这段时间开始重新查询，重复的行按updated_at跳过
+    private static final long WATERMARK_OVERLAP_MS = 30 * 1000L;
+
+    // sync_state表中的键
+    private static final String STATE_OWNER = "tasks.owner";
+    private static final String STATE_WATERMARK_UPDATED_AT = "tasks.watermark_updated_at";
+    private static final String STATE_WATERMARK_ID = "tasks.watermark_id";
+    private static final String STATE_LAST_FULL_SYNC = "tasks.last_full_sync";
+
+    /**
+     * 本地副本变化监听（在执行同步的线程上回调）
+     */
+    public interface Listener {
+        void onTasksChanged();
+    }
+
+    private static volatile TaskSyncManager instance;
+    private final java.util.concurrent.CopyOnWriteArrayList<Listener> listeners =
+            new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    private final Context context;
+    private final SupabaseHttpClient httpClient = SupabaseHttpClient.getInstance();
+    private final DatabaseHelper replica;
+
+    // 同步水位：已合并的最后一行的 updated_at 和 id
+    private String watermarkUpdatedAt;
+    private String watermarkId;
+    // 本地副本对应的 Supabase地址+用户，配置变化时重新全量同步
+    private String storeOwner;
+    private long lastFullSyncTime = 0;
+    private boolean stateLoaded = false;
+
+    // 统计
+    private long deltaSyncCount = 0;
+    private long fullSyncCount = 0;
+    private long lastChangedRows = 0;
+    private volatile long lastSyncTime = 0;
+    private volatile long lastAttemptTime = 0;
+
+    public static TaskSyncManager getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TaskSyncManager.class) {
+                if (instance == null) {
+                    instance = new TaskSyncManager(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private TaskSyncManager(Context context) {
+        this.context = context;
+        this.replica = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * 本地任务副本（用于报告和提醒的本地查询）
+     */
+    public DatabaseHelper replica() {
+        return replica;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 执行一次同步：首次、配置变化或超过全量间隔时全量拉取，否则只拉取水位之后的变化
+     * @return 本次新增或更新的任务数，失败返回-1
+     */
+    public synchronized int sync() {
+        lastAttemptTime = System.currentTimeMillis();
+        AppSettings settings = AppSettings.get(context);
+        if (!settings.hasSupabaseConfig()) {
+            Log.w(TAG, "Supabase配置不完整，跳过任务同步");
+            return -1;
+        }
+
+        try {
+            loadState();
+
+            String owner = settings.supabaseUrl + "|" + settings.supabaseUserId;
+            boolean needFullSync = !owner.equals(storeOwner)
+                    || watermarkUpdatedAt == null
+                    || System.currentTimeMillis() - lastFullSyncTime > FULL_SYNC_INTERVAL_MS;
+
+            return needFullSync ? fullSync(settings, owner) : deltaSync(settings);
+        } catch (Exception e) {
+            Log.e(TAG, "同步任务异常", e);
+            return -1;
+        }
+    }
+
+    /**
+     * 距上次同步超过maxAgeMs时同步一次（按尝试时间计算，离线时不会每次调用都重试）
+     * @return 本地副本是否可用（同步失败但已有副本时仍返回true，离线时继续使用本地数据）
+     */
+    public boolean syncIfStale(long maxAgeMs) {
+        if (System.currentTimeMillis() - lastAttemptTime > maxAgeMs) {
+            sync();
+        }
+        return isReady();
+    }
+
+    /**
+     * 强制下次同步走全量
+     */
+    public synchronized void invalidate() {
+        loadState();
+        watermarkUpdatedAt = null;
+        watermarkId = null;
+    }
+
+    /**
+     * 本地副本是否已完成过至少一次同步，且属于当前配置的用户
+     */
+    public synchronized boolean isReady() {
+        try {
+            loadState();
+        } catch (Exception e) {
+            Log.e(TAG, "读取同步状态失败", e);
+            return false;
+        }
+        AppSettings settings = AppSettings.get(context);
+        return watermarkUpdatedAt != null
+                && (settings.supabaseUrl + "|" + settings.supabaseUserId).equals(storeOwner);
+    }
+
+    private void loadState() {
+        if (stateLoaded) {
+            return;
+        }
+        storeOwner = replica.getSyncState(STATE_OWNER);
+        watermarkUpdatedAt = replica.getSyncState(STATE_WATERMARK_UPDATED_AT);
+        watermarkId = replica.getSyncState(STATE_WATERMARK_ID);
+        String lastFull = replica.getSyncState(STATE_LAST_FULL_SYNC);
+        try {
+            lastFullSyncTime = lastFull != null ? Long.parseLong(lastFull) : 0;
+        } catch (NumberFormatException e) {
+            lastFullSyncTime = 0;
+        }
+        stateLoaded = true;
+    }
+
+    private int fullSync(AppSettings settings, String owner) throws Exception {
+        java.util.List<SupabaseInterface.DetailedTask> all = new java.util.ArrayList<>();
+        String sinceUpdatedAt = null;
+        String sinceId = null;
+
+        while (true) {
+            java.util.List<SupabaseInterface.DetailedTask> page = fetchPage(settings, sinceUpdatedAt, sinceId);
+            if (page == null) {
+                return -1;
+            }
+            all.addAll(page);
+            if (!page.isEmpty()) {
+                SupabaseInterface.DetailedTask last = page.get(page.size() - 1);
+                sinceUpdatedAt = last.updatedAt;
+                sinceId = last.taskId;
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        java.util.Map<String, String> state = new java.util.HashMap<>();
+        state.put(STATE_OWNER, owner);
+        state.put(STATE_WATERMARK_UPDATED_AT, sinceUpdatedAt != null ? sinceUpdatedAt : "");
+        state.put(STATE_WATERMARK_ID, sinceId != null ? sinceId : "");
+        state.put(STATE_LAST_FULL_SYNC, String.valueOf(now));
+        replica.applyTaskSync(all, true, state);
+
+        storeOwner = owner;
+        watermarkUpdatedAt = state.get(STATE_WATERMARK_UPDATED_AT);
+        watermarkId = state.get(STATE_WATERMARK_ID);
+        lastFullSyncTime = now;
+        fullSyncCount++;
+        // 全量同步可能删除了本地任务，无论行数都通知
+        onSynced(all.size(), true);
+        Log.d(TAG, "全量同步完成，任务数: " + all.size() + ", 水位: " + watermarkUpdatedAt);
+        return all.size();
+    }
+
+    private int deltaSync(AppSettings settings) throws Exception {
+        int total = 0;
+        // 第一页从水位前的重叠窗口开始（含边界）；水位无法解析时退回严格的 (updated_at, id) 游标
+        String overlapStart = overlapStart(watermarkUpdatedAt);
+        String sinceUpdatedAt = overlapStart != null ? overlapStart : watermarkUpdatedAt;
+        String sinceId = overlapStart != null ? null : watermarkId;
+
+        while (true) {
+            java.util.List<SupabaseInterface.DetailedTask> page = fetchPage(settings, sinceUpdatedAt, sinceId);
+            if (page == null) {
+                return -1;
+            }
+            if (page.isEmpty()) {
+                break;
+            }
+
+            SupabaseInterface.DetailedTask last = page.get(page.size() - 1);
+            sinceUpdatedAt = last.updatedAt;
+            sinceId = last.taskId;
+
+            // 重叠窗口内的行可能都在水位之前，水位只前进不后退
+            java.util.Map<String, String> state = new java.util.HashMap<>();
+            boolean advance = isAfterWatermark(last.updatedAt, last.taskId);
+            if (advance) {
+                state.put(STATE_WATERMARK_UPDATED_AT, last.updatedAt);
+                state.put(STATE_WATERMARK_ID, last.taskId);
+            }
+            total += replica.applyTaskSync(page, false, state);
+
+            if (advance) {
+                watermarkUpdatedAt = last.updatedAt;
+                watermarkId = last.taskId;
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+        }
+
+        deltaSyncCount++;
+        onSynced(total, total > 0);
+        if (total > 0) {
+            Log.d(TAG, "增量同步合并 " + total + " 条任务，水位: " + watermarkUpdatedAt);
+        }
+        return total;
+    }
+
+    /**
+     * 水位前WATERMARK_OVERLAP_MS的时间（ISO格式），无法解析时返回null
+     */
+    private static String overlapStart(String updatedAt) {
+        java.time.Instant instant = parseInstant(updatedAt);
+        return instant != null ? instant.minusMillis(WATERMARK_OVERLAP_MS).toString() : null;
+    }
+
+    /**
+     * (updatedAt, id) 是否在当前水位之后
+     */
+    private boolean isAfterWatermark(String updatedAt, String id) {
+        java.time.Instant candidate = parseInstant(updatedAt);
+        java.time.Instant current = parseInstant(watermarkUpdatedAt);
+        int cmp = candidate != null && current != null
+                ? candidate.compareTo(current)
+                : String.valueOf(updatedAt).compareTo(String.valueOf(watermarkUpdatedAt));
+        if (cmp != 0) {
+            return cmp > 0;
+        }
+        return watermarkId == null || String.valueOf(id).compareTo(watermarkId) > 0;
+    }
+
+    private static java.time.Instant parseInstant(String timestamp) {
+        if (timestamp == null || timestamp.isEmpty()) {
+            return null;
+        }
+        try {
+            return java.time.OffsetDateTime.parse(timestamp).toInstant();
+        } catch (java.time.format.DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private void onSynced(int changedRows, boolean changed) {
+        lastChangedRows = changedRows;
+        lastSyncTime = System.currentTimeMillis();
+        if (!changed) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            try {
+                listener.onTasksChanged();
+            } catch (Exception e) {
+                Log.e(TAG, "通知任务变化失败", e);
+            }
+        }
+    }
+
+    /**
+     * 按 (updated_at, id) 升序拉取水位之后的一页任务
+     * sinceId为null时返回 updated_at >= sinceUpdatedAt 的行（增量同步的重叠窗口）
+     * @return 任务列表（已过滤无id或无updated_at的行），失败返回null
+     */
+    private java.util.List<SupabaseInterface.DetailedTask> fetchPage(AppSettings settings, String sinceUpdatedAt,
+                                                                      String sinceId) throws Exception {
+        StringBuilder queryUrl = new StringBuilder(settings.supabaseUrl)
+                .append("/rest/v1/tasks?user_id=eq.").append(settings.supabaseUserId)
+                .append("&updated_at=not.is.null");
+
+        if (sinceUpdatedAt != null && !sinceUpdatedAt.isEmpty() && sinceId == null) {
+            queryUrl.append("&updated_at=gte.").append(java.net.URLEncoder.encode(sinceUpdatedAt, "UTF-8"));
+        } else if (sinceUpdatedAt != null && !sinceUpdatedAt.isEmpty()) {
+            // 同一updated_at可能跨页，用id作为第二排序键避免漏行或重复
+            String quotedTime = java.net.URLEncoder.encode("\"" + sinceUpdatedAt + "\"", "UTF-8");
+            String quotedId = java.net.URLEncoder.encode("\"" + sinceId + "\"", "UTF-8");
+            queryUrl.append("&or=(updated_at.gt.").append(quotedTime)
+                    .append(",and(updated_at.eq.").append(quotedTime)
+                    .append(",id.gt.").append(quotedId).append("))");
+        }
+
+        queryUrl.append(TaskProjection.DETAIL.toQueryParam())
+                .append("&order=updated_at.asc,id.asc")
+                .append("&limit=").append(PAGE_SIZE);
+
+        try (SupabaseHttpClient.Response response = httpClient.get(queryUrl.toString(), settings.supabaseAnonKey)) {
+            if (!response.isSuccessful()) {
+                Log.e(TAG, "同步任务失败，响应码: " + response.code());
+                Log.e(TAG, "错误响应: " + response.bodyString());
+                return null;
+            }
+            return SupabaseJsonDecoder.readTasksDetailed(response.body());
+        }
+    }
+
+    /**
+     * 本地副本中分配给指定用户的任务（与服务端 assignee.ilike.%userId% 的匹配方式一致）
+     */
+    public java.util.List<SupabaseInterface.DetailedTask> getTasksForAssignee(String userId) {
+        return replica.getTasksForAssignee(userId);
+    }
+
+    /**
+     * 同步状态和统计
+     */
+    public synchronized JSONObject getStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("taskCount", replica.getTaskCount());
+            stats.put("watermark", watermarkUpdatedAt != null ? watermarkUpdatedAt : "");
+            stats.put("deltaSyncCount", deltaSyncCount);
+            stats.put("fullSyncCount", fullSyncCount);
+            stats.put("lastChangedRows", lastChangedRows);
+            stats.put("lastSyncTime", lastSyncTime);
+            stats.put("lastFullSyncTime", lastFullSyncTime);
+        } catch (JSONException e) {
+            Log.e(TAG, "生成同步统计失败", e);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 客户端websocket连接（RFC 6455，仅实现客户端需要的部分）：握手、加掩码发送、分片重组、ping/close控制帧
+ * 只依赖输入输出流，不涉及Android API，单元测试中可以直接对接本地ServerSocket
+ */
+class WebSocketConnection {
+
+    static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    static final int OPCODE_CONTINUATION = 0x0;
+    static final int OPCODE_TEXT = 0x1;
+    static final int OPCODE_BINARY = 0x2;
+    static final int OPCODE_CLOSE = 0x8;
+    static final int OPCODE_PING = 0x9;
+    static final int OPCODE_PONG = 0xA;
+
+    // 单条消息上限，防止异常帧占满内存
+    static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+
+    /**
+     * 完整文本消息回调（在读取线程中调用）
+     */
+    interface TextHandler {
+        void onText(String text) throws IOException;
+    }
+
+    private final InputStream in;
+    private final OutputStream out;
+    private final Random random;
+    private final Object writeLock = new Object();
+
+    WebSocketConnection(InputStream in, OutputStream out, Random random) {
+        this.in = in;
+        this.out = out;
+        this.random = random;
+    }
+
+    // ========== 握手 ==========
+
+    /**
+     * 发送升级请求并校验101响应和Sec-WebSocket-Accept
+     */
+    void handshake(String host, int port, boolean secure, String path) throws IOException {
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        String key = Base64.getEncoder().encodeToString(nonce);
+
+        boolean defaultPort = (secure && port == 443) || (!secure && port == 80);
+        String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + host + (defaultPort ? "" : ":" + port) + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "\r\n";
+        synchronized (writeLock) {
+            out.write(request.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        String statusLine = readLine(in);
+        if (statusLine == null || !statusLine.startsWith("HTTP/1.1 101")) {
+            throw new IOException("websocket握手失败: " + statusLine);
+        }
+
+        String accept = null;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Accept")) {
+                accept = line.substring(colon + 1).trim();
+            }
+        }
+
+        if (!acceptKey(key).equals(accept)) {
+            throw new IOException("websocket握手校验失败");
+        }
+    }
+
+    /**
+     * 服务端对Sec-WebSocket-Key应答的Sec-WebSocket-Accept
+     */
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(
+                    sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+            if (line.size() > 8192) {
+                throw new IOException("握手响应头过长");
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString("UTF-8");
+    }
+
+    // ========== 帧 ==========
+
+    /**
+     * 读取帧直到连接关闭或running返回false：自动应答ping，收到close时回送close并抛出EOFException，
+     * 分片的文本消息重组后交给handler
+     */
+    void readMessages(TextHandler handler, BooleanSupplier running) throws IOException {
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        int messageOpcode = -1;
+
+        while (running.getAsBoolean()) {
+            int b0 = in.read();
+            int b1 = in.read();
+            if (b0 == -1 || b1 == -1) {
+                throw new EOFException("连接已关闭");
+            }
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0F;
+            boolean masked = (b1 & 0x80) != 0;
+            long length = b1 & 0x7F;
+            if (length == 126) {
+                length = ((long) readByte(in) << 8) | readByte(in);
+            } else if (length == 127) {
+                length = 0;
+                for (int i = 0; i < 8; i++) {
+                    length = (length << 8) | readByte(in);
+                }
+            }
+            if (length > MAX_MESSAGE_BYTES) {
+                throw new IOException("帧过大: " + length);
+            }
+
+            byte[] mask = null;
+            if (masked) {
+                mask = new byte[4];
+                readFully(in, mask);
+            }
+            byte[] payload = new byte[(int) length];
+            readFully(in, payload);
+            if (mask != null) {
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i % 4];
+                }
+            }
+
+            switch (opcode) {
+                case OPCODE_PING:
+                    sendFrame(OPCODE_PONG, payload);
+                    break;
+                case OPCODE_PONG:
+                    break;
+                case OPCODE_CLOSE:
+                    sendFrame(OPCODE_CLOSE, new byte[0]);
+                    throw new EOFException("服务端发送了关闭帧");
+                case OPCODE_TEXT:
+                case OPCODE_BINARY:
+                case OPCODE_CONTINUATION:
+                    if (opcode != OPCODE_CONTINUATION) {
+                        message.reset();
+                        messageOpcode = opcode;
+                    }
+                    message.write(payload, 0, payload.length);
+                    if (message.size() > MAX_MESSAGE_BYTES) {
+                        throw new IOException("消息过大");
+                    }
+                    if (fin) {
+                        if (messageOpcode == OPCODE_TEXT) {
+                            handler.onText(message.toString("UTF-8"));
+                        }
+                        message.reset();
+                        messageOpcode = -1;
+                    }
+                    break;
+                default:
+                    throw new IOException("未知帧类型: " + opcode);
+            }
+        }
+    }
+
+    void sendText(String text) throws IOException {
+        sendFrame(OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 发送一个完整的帧（客户端发送的帧必须加掩码）
+     */
+    void sendFrame(int opcode, byte[] payload) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 14);
+        frame.write(0x80 | opcode);
+        if (payload.length < 126) {
+            frame.write(0x80 | payload.length);
+        } else if (payload.length <= 0xFFFF) {
+            frame.write(0x80 | 126);
+            frame.write((payload.length >> 8) & 0xFF);
+            frame.write(payload.length & 0xFF);
+        } else {
+            frame.write(0x80 | 127);
+            for (int i = 7; i >= 0; i--) {
+                frame.write((int) (((long) payload.length >> (8 * i)) & 0xFF));
+            }
+        }
+
+        byte[] mask = new byte[4];
+        random.nextBytes(mask);
+        frame.write(mask, 0, 4);
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(payload[i] ^ mask[i % 4]);
+        }
+
+        // 读取线程（pong）和心跳线程都会发送，写入需要串行
+        synchronized (writeLock) {
+            out.write(frame.toByteArray());
+            out.flush();
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("连接已关闭");
+        }
+        return b;
+    }
+
+    static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                throw new EOFException("连接已关闭");
+            }
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.myapplication;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * websocket帧、握手和Phoenix消息分发，对接进程内的ServerSocket作为服务端替身
+ */
+public class RealtimeClientTest {
+
+    private ServerSocket serverSocket;
+    private ExecutorService background;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout(5000);
+        background = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        background.shutdownNow();
+        serverSocket.close();
+    }
+
+    @Test
+    public void handshake_acceptsMatchingKey() throws Exception {
+        try (Socket client = connect(); ServerEnd server = new ServerEnd(serverSocket.accept())) {
+            WebSocketConnection connection = newConnection(client);
+            Future<?> handshake = background.submit(() -> {
+                connection.handshake("127.0.0.1", serverSocket.getLocalPort(), false, "/realtime/v1/websocket");
+                return null;
+            });
+
+            String request = server.readRequest();
+            assertTrue(request.startsWith("GET /realtime/v1/websocket HTTP/1.1"));
+            assertTrue(request.contains("Upgrade: websocket"));
+            assertTrue(request.contains("Sec-WebSocket-Version: 13"));
+            server.respond(WebSocketConnection.acceptKey(server.key));
+
+            handshake.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void handshake_rejectsWrongAccept() throws Exception {
+        try (Socket client = connect(); ServerEnd server = new ServerEnd(serverSocket.accept())) {
+            WebSocketConnection connection = newConnection(client);
+            Future<?> handshake = background.submit(() -> {
+                connection.handshake("127.0.0.1", serverSocket.getLocalPort(), false, "/");
+                return null;
+            });
+
+            server.readRequest();
+            server.respond(WebSocketConnection.acceptKey("some-other-key"));
+
+            try {
+                handshake.get(5, TimeUnit.SECONDS);
+                fail("握手应校验失败");
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+    }
+
+    @Test
+    public void frames_maskedRoundTrip() throws Exception {
+        try (Socket client = connect(); ServerEnd server = new ServerEnd(serverSocket.accept())) {
+            WebSocketConnection connection = newConnection(client);
+
+            // 覆盖7位、16位和64位三种长度编码
+            for (int length : new int[]{5, 300, 70000}) {
+                String text = repeat('x', length - 1) + "中";
+                // 大帧可能超出socket缓冲区，写入放到后台线程，避免与读取方互相等待
+                Future<?> sent = background.submit(() -> {
+                    connection.sendText(text);
+                    return null;
+                });
+
+                Frame frame = server.readFrame();
+                sent.get(5, TimeUnit.SECONDS);
+                assertTrue(frame.masked);
+                assertTrue(frame.fin);
+                assertEquals(WebSocketConnection.OPCODE_TEXT, frame.opcode);
+                assertEquals(text, new String(frame.payload, StandardCharsets.UTF_8));
+
+                Future<?> echoed = background.submit(() -> {
+                    server.writeFrame(true, WebSocketConnection.OPCODE_TEXT, frame.payload);
+                    return null;
+                });
+                assertEquals(text, readOneMessage(connection));
+                echoed.get(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    public void frames_reassembleFragmentedText() throws Exception {
+        try (Socket client = connect(); ServerEnd server = new ServerEnd(serverSocket.accept())) {
+            WebSocketConnection connection = newConnection(client);
+
+            server.writeFrame(false, WebSocketConnection.OPCODE_TEXT, utf8("hel"));
+            // 控制帧可以插在分片之间
+            server.writeFrame(true, WebSocketConnection.OPCODE_PING, utf8("p"));
+            server.writeFrame(false, WebSocketConnection.OPCODE_CONTINUATION, utf8("lo "));
+            server.writeFrame(true, WebSocketConnection.OPCODE_CONTINUATION, utf8("world"));
+
+            assertEquals("hello world", readOneMessage(connection));
+            Frame pong = server.readFrame();
+            assertEquals(WebSocketConnection.OPCODE_PONG, pong.opcode);
+        }
+    }
+
+    @Test
+    public void frames_pingAnsweredWithPong() throws Exception {
+        try (Socket client = connect(); ServerEnd server = new ServerEnd(serverSocket.accept())) {
+            WebSocketConnection connection = newConnection(client);
+
+            server.writeFrame(true, WebSocketConnection.OPCODE_PING, utf8("are you there"));
+            server.writeFrame(true, WebSocketConnection.OPCODE_TEXT, utf8("done"));
+            assertEquals("done", readOneMessage(connection));
+
+            Frame pong = server.readFrame();
+            assertEquals(WebSocketConnection.OPCODE_PONG, pong.opcode);
+            assertTrue(pong.masked);
+            assertEquals("are you there", new String(pong.payload, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void frames_closeIsEchoedAndEndsReading() throws Exception {
+        try (Socket client = connect(); ServerEnd server = new ServerEnd(serverSocket.accept())) {
+            WebSocketConnection connection = newConnection(client);
+
+            server.writeFrame(true, WebSocketConnection.OPCODE_CLOSE, new byte[0]);
+            try {
+                connection.readMessages(text -> fail("不应收到消息"), () -> true);
+                fail("收到关闭帧后应结束读取");
+            } catch (EOFException expected) {
+                // 关闭帧按连接断开处理
+            }
+
+            Frame close = server.readFrame();
+            assertEquals(WebSocketConnection.OPCODE_CLOSE, close.opcode);
+        }
+    }
+
+    @Test
+    public void client_joinsAndDispatchesReplyAndInsert() throws Exception {
+        CountDownLatch subscribed = new CountDownLatch(1);
+        CountDownLatch inserted = new CountDownLatch(1);
+        AtomicReference<JSONObject> insertedRecord = new AtomicReference<>();
+
+        RealtimeClient client = new RealtimeClient("http://127.0.0.1:" + serverSocket.getLocalPort(), "anon-key",
+                "messages", "receiver_id=eq.u1", new RealtimeClient.Listener() {
+            @Override
+            public void onSubscribed() {
+                subscribed.countDown();
+            }
+
+            @Override
+            public void onInsert(JSONObject record) {
+                insertedRecord.set(record);
+                inserted.countDown();
+            }
+
+            @Override
+            public void onDisconnected(Exception cause) {
+            }
+        });
+
+        client.start();
+        try (ServerEnd server = new ServerEnd(serverSocket.accept())) {
+            String request = server.readRequest();
+            assertTrue(request.startsWith("GET /realtime/v1/websocket?apikey=anon-key&vsn=1.0.0 HTTP/1.1"));
+            server.respond(WebSocketConnection.acceptKey(server.key));
+
+            JSONObject join = new JSONObject(new String(server.readFrame().payload, StandardCharsets.UTF_8));
+            assertEquals("phx_join", join.getString("event"));
+            assertEquals("realtime:messages:receiver_id=eq.u1", join.getString("topic"));
+            JSONObject change = join.getJSONObject("payload").getJSONObject("config")
+                    .getJSONArray("postgres_changes").getJSONObject(0);
+            assertEquals("INSERT", change.getString("event"));
+            assertEquals("receiver_id=eq.u1", change.getString("filter"));
+
+            JSONObject reply = new JSONObject()
+                    .put("topic", join.getString("topic"))
+                    .put("event", "phx_reply")
+                    .put("ref", join.getString("ref"))
+                    .put("payload", new JSONObject().put("status", "ok"));
+            server.writeFrame(true, WebSocketConnection.OPCODE_TEXT, utf8(reply.toString()));
+            assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+            assertTrue(client.isSubscribed());
+
+            JSONObject change1 = new JSONObject()
+                    .put("topic", join.getString("topic"))
+                    .put("event", "postgres_changes")
+                    .put("payload", new JSONObject().put("data", new JSONObject()
+                            .put("type", "INSERT")
+                            .put("record", new JSONObject().put("id", 42).put("receiver_id", "u1"))));
+            byte[] bytes = utf8(change1.toString());
+            int half = bytes.length / 2;
+            server.writeFrame(false, WebSocketConnection.OPCODE_TEXT, java.util.Arrays.copyOfRange(bytes, 0, half));
+            server.writeFrame(true, WebSocketConnection.OPCODE_CONTINUATION,
+                    java.util.Arrays.copyOfRange(bytes, half, bytes.length));
+
+            assertTrue(inserted.await(5, TimeUnit.SECONDS));
+            assertEquals(42, insertedRecord.get().getLong("id"));
+        } finally {
+            client.stop();
+        }
+    }
+
+    // ========== 测试辅助 ==========
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static WebSocketConnection newConnection(Socket socket) throws IOException {
+        return new WebSocketConnection(new BufferedInputStream(socket.getInputStream()), socket.getOutputStream(),
+                new SecureRandom());
+    }
+
+    private static String readOneMessage(WebSocketConnection connection) throws IOException {
+        AtomicReference<String> received = new AtomicReference<>();
+        connection.readMessages(received::set, () -> received.get() == null);
+        return received.get();
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static class Frame {
+        boolean fin;
+        boolean masked;
+        int opcode;
+        byte[] payload;
+    }
+
+    /**
+     * 服务端一侧：读取握手请求、发送不加掩码的帧、读取并解掩码客户端的帧
+     */
+    private static class ServerEnd implements AutoCloseable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        String key;
+
+        ServerEnd(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setSoTimeout(5000);
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        String readRequest() throws IOException {
+            StringBuilder request = new StringBuilder();
+            String line;
+            while ((line = WebSocketConnection.readLine(in)) != null && !line.isEmpty()) {
+                request.append(line).append('\n');
+                if (line.startsWith("Sec-WebSocket-Key:")) {
+                    key = line.substring("Sec-WebSocket-Key:".length()).trim();
+                }
+            }
+            return request.toString();
+        }
+
+        void respond(String accept) throws IOException {
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept + "\r\n"
+                    + "\r\n";
+            out.write(utf8(response));
+            out.flush();
+        }
+
+        void writeFrame(boolean fin, int opcode, byte[] payload) throws IOException {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            frame.write((fin ? 0x80 : 0) | opcode);
+            if (payload.length < 126) {
+                frame.write(payload.length);
+            } else if (payload.length <= 0xFFFF) {
+                frame.write(126);
+                frame.write((payload.length >> 8) & 0xFF);
+                frame.write(payload.length & 0xFF);
+            } else {
+                frame.write(127);
+                for (int i = 7; i >= 0; i--) {
+                    frame.write((int) (((long) payload.length >> (8 * i)) & 0xFF));
+                }
+            }
+            frame.write(payload, 0, payload.length);
+            out.write(frame.toByteArray());
+            out.flush();
+        }
+
+        Frame readFrame() throws IOException {
+            Frame frame = new Frame();
+            int b0 = in.read();
+            int b1 = in.read();
+            frame.fin = (b0 & 0x80) != 0;
+            frame.opcode = b0 & 0x0F;
+            frame.masked = (b1 & 0x80) != 0;
+            long length = b1 & 0x7F;
+            if (length == 126) {
+                length = (in.read() << 8) | in.read();
+            } else if (length == 127) {
+                length = 0;
+                for (int i = 0; i < 8; i++) {
+                    length = (length << 8) | in.read();
+                }
+            }
+            byte[] mask = new byte[4];
+            if (frame.masked) {
+                WebSocketConnection.readFully(in, mask);
+            }
+            frame.payload = new byte[(int) length];
+            WebSocketConnection.readFully(in, frame.payload);
+            for (int i = 0; i < frame.payload.length; i++) {
+                frame.payload[i] ^= mask[i % 4];
+            }
+            return frame;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
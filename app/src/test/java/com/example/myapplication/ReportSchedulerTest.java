@@ -0,0 +1,73 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * 报告闹钟的下一次触发时间计算
+ */
+public class ReportSchedulerTest {
+
+    private TimeZone originalTimeZone;
+
+    @Before
+    public void setUp() {
+        originalTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(originalTimeZone);
+    }
+
+    @Test
+    public void nextTriggerTime_laterTodayStaysToday() {
+        long now = at(2026, Calendar.OCTOBER, 17, 8, 30, 15);
+        assertEquals(at(2026, Calendar.OCTOBER, 17, 9, 0, 0), ReportScheduler.nextTriggerTime("09:00", now));
+    }
+
+    @Test
+    public void nextTriggerTime_passedTimeMovesToTomorrow() {
+        long now = at(2026, Calendar.OCTOBER, 17, 18, 0, 1);
+        assertEquals(at(2026, Calendar.OCTOBER, 18, 18, 0, 0), ReportScheduler.nextTriggerTime("18:00", now));
+    }
+
+    @Test
+    public void nextTriggerTime_exactlyNowMovesToTomorrow() {
+        long now = at(2026, Calendar.OCTOBER, 17, 9, 0, 0);
+        assertEquals(at(2026, Calendar.OCTOBER, 18, 9, 0, 0), ReportScheduler.nextTriggerTime("09:00", now));
+    }
+
+    @Test
+    public void nextTriggerTime_rollsOverMonthEnd() {
+        long now = at(2026, Calendar.OCTOBER, 31, 23, 0, 0);
+        assertEquals(at(2026, Calendar.NOVEMBER, 1, 7, 30, 0), ReportScheduler.nextTriggerTime("07:30", now));
+    }
+
+    @Test
+    public void nextTriggerTime_acceptsHourOnlyAndSpaces() {
+        long now = at(2026, Calendar.OCTOBER, 17, 6, 0, 0);
+        assertEquals(at(2026, Calendar.OCTOBER, 17, 8, 0, 0), ReportScheduler.nextTriggerTime("8", now));
+        assertEquals(at(2026, Calendar.OCTOBER, 17, 8, 5, 0), ReportScheduler.nextTriggerTime(" 8 : 05 ", now));
+    }
+
+    @Test
+    public void nextTriggerTime_malformedFallsBackToNine() {
+        long now = at(2026, Calendar.OCTOBER, 17, 6, 0, 0);
+        assertEquals(at(2026, Calendar.OCTOBER, 17, 9, 0, 0), ReportScheduler.nextTriggerTime("abc", now));
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.myapplication;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 单飞执行：执行中跳过、合并为一次补跑、排队中的提交合并、拒绝和失败计数
+ * SingleFlightRunner是单例，各用例使用不同的任务名互不影响
+ */
+public class SingleFlightRunnerTest {
+
+    private final SingleFlightRunner runner = SingleFlightRunner.getInstance();
+
+    @Test
+    public void run_skipsWhileInFlightAndRerunsOnce() throws Exception {
+        String name = "test-skip-in-flight";
+        BlockingTask task = new BlockingTask();
+        Thread first = startRun(name, task);
+        assertTrue(task.entered.await(5, TimeUnit.SECONDS));
+
+        assertFalse(runner.run(name, task));
+
+        task.release.countDown();
+        first.join(5000);
+        assertEquals(2, task.calls.get());
+
+        JSONObject stats = stats(name);
+        assertEquals(2, stats.getLong("started"));
+        assertEquals(1, stats.getLong("skipped"));
+        assertEquals(1, stats.getLong("coalesced"));
+        assertFalse(stats.getBoolean("inFlight"));
+    }
+
+    @Test
+    public void run_coalescesSeveralTriggersIntoOneTrailingRerun() throws Exception {
+        String name = "test-coalesce";
+        BlockingTask task = new BlockingTask();
+        Thread first = startRun(name, task);
+        assertTrue(task.entered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            assertFalse(runner.run(name, task));
+        }
+
+        task.release.countDown();
+        first.join(5000);
+        assertEquals(2, task.calls.get());
+
+        JSONObject stats = stats(name);
+        assertEquals(2, stats.getLong("started"));
+        assertEquals(3, stats.getLong("skipped"));
+        assertEquals(1, stats.getLong("coalesced"));
+    }
+
+    @Test
+    public void run_returnsCallersOwnResult() {
+        assertEquals("value", runner.run("test-result", () -> "value", "skipped"));
+    }
+
+    @Test
+    public void submit_absorbsQueuedSubmits() throws Exception {
+        String name = "test-queued";
+        ManualExecutor executor = new ManualExecutor();
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            runner.submit(name, executor, calls::incrementAndGet);
+        }
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals(1, calls.get());
+
+        // 执行后排队标记已清除，新的提交重新入队
+        runner.submit(name, executor, calls::incrementAndGet);
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(2, calls.get());
+
+        JSONObject stats = stats(name);
+        assertEquals(2, stats.getLong("started"));
+        assertEquals(2, stats.getLong("skipped"));
+    }
+
+    @Test
+    public void submit_rejectedClearsQueuedFlag() throws Exception {
+        String name = "test-rejected";
+        AtomicInteger attempts = new AtomicInteger();
+        Executor rejecting = command -> {
+            attempts.incrementAndGet();
+            throw new RejectedExecutionException("full");
+        };
+
+        runner.submit(name, rejecting, () -> { });
+        runner.submit(name, rejecting, () -> { });
+        assertEquals(2, attempts.get());
+
+        ManualExecutor executor = new ManualExecutor();
+        AtomicInteger calls = new AtomicInteger();
+        runner.submit(name, executor, calls::incrementAndGet);
+        executor.runAll();
+        assertEquals(1, calls.get());
+
+        JSONObject stats = stats(name);
+        assertEquals(2, stats.getLong("rejected"));
+        assertEquals(0, stats.getLong("skipped"));
+    }
+
+    @Test
+    public void run_countsFailuresAsStarted() throws Exception {
+        String name = "test-failed";
+        assertFalse(runner.run(name, () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertTrue(runner.run(name, () -> { }));
+
+        JSONObject stats = stats(name);
+        assertEquals(2, stats.getLong("started"));
+        assertEquals(1, stats.getLong("failed"));
+        assertFalse(stats.getBoolean("inFlight"));
+    }
+
+    // ========== 测试辅助 ==========
+
+    private Thread startRun(String name, Runnable task) {
+        Thread thread = new Thread(() -> runner.run(name, task));
+        thread.start();
+        return thread;
+    }
+
+    private JSONObject stats(String name) throws Exception {
+        return runner.getStats().getJSONObject(name);
+    }
+
+    /**
+     * 第一次执行时阻塞到release，之后的执行（补跑）直接返回
+     */
+    private static class BlockingTask implements Runnable {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void run() {
+            if (calls.incrementAndGet() == 1) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * 只收集任务，由测试决定何时执行
+     */
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            for (Runnable task : pending) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+-- PostgreSQL版本 - 系统通知消息去重
+-- 适用于 Supabase (PostgreSQL)
+-- 到期/逾期提醒、每日待办等系统消息由客户端批量写入：
+-- POST /rest/v1/messages?on_conflict=task_id,receiver_id,message_type,notify_date
+-- Prefer: resolution=ignore-duplicates
+-- 同一任务、同一接收者、同一类型的消息每天只保留一条，多台设备同时写入也不会重复
+
+-- 添加去重日期列（客户端写入本地日期；普通聊天消息为NULL，不参与去重）
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1 FROM information_schema.columns
+        WHERE table_name = 'messages'
+        AND column_name = 'notify_date'
+        AND table_schema = current_schema()
+    ) THEN
+        ALTER TABLE messages ADD COLUMN notify_date DATE;
+    END IF;
+END $$;
+
+-- 唯一索引（NULL互不相等，notify_date为NULL的历史消息和聊天消息不受影响）
+-- 不使用部分索引：PostgREST的on_conflict无法指定索引条件
+CREATE UNIQUE INDEX IF NOT EXISTS uq_messages_task_receiver_type_day
+    ON messages(task_id, receiver_id, message_type, notify_date);
+
+COMMENT ON COLUMN messages.notify_date IS '系统通知消息的去重日期，同一任务/接收者/类型每天一条';